@@ -39,6 +39,48 @@ public class ArrayOfListsOfPairs<K,V> {
         storage[index] = node;
     }
     
+    /**
+     * Add a key-value pair unless the key is already there, walking the list only once.
+     * @param key the key
+     * @param value the value that is associated with the given key
+     * @return the value already associated with the key, or null if the pair was added
+     */
+    public V putIfAbsent(K key, V value) {
+        int index = getIndex(key);
+        // Look for the key, if found return its value without adding anything.
+        for (Node<K,V> current = storage[index]; current != null; current = current.next) {
+            if (current.pair.getKey().equals(key)) {
+                return current.pair.getValue();
+            }
+        }
+        // Not found, add the new node to the head of the list.
+        storage[index] = new Node<>(new KeyValuePair<>(key, value), storage[index]);
+        return null;
+    }
+    
+    /**
+     * Remove the pair with the given key, walking the list only once.
+     * @param key the key
+     * @return the value that was associated with the key, or null if the key was not found
+     */
+    public V removeKey(K key) {
+        int index = getIndex(key);
+        Node<K,V> previous = null;
+        for (Node<K,V> current = storage[index]; current != null; current = current.next) {
+            if (current.pair.getKey().equals(key)) {
+                // Unlink the node (the head has no previous node).
+                if (previous == null) {
+                    storage[index] = current.next;
+                } else {
+                    previous.next = current.next;
+                }
+                return current.pair.getValue();
+            }
+            previous = current;
+        }
+        return null;
+    }
+    
     /**
      * Add an edge (value) assiciated with the key (to) to the linked list of the array at index (id).
      * @param id the index of the array
@@ -60,21 +102,43 @@ public class ArrayOfListsOfPairs<K,V> {
      * @return the index of the array
      */
     private int getIndex(K key, int capacity) {
-        int hashCode = key.hashCode();
+        int hashCode = spread(key.hashCode());
         int index = hashCode % capacity;
         return index;
     }
     
+    /**
+     * Spread a hash code so keys whose hash codes differ only in the high bits
+     * (or only by a constant stride) still land in different lists.
+     * The high half is folded into the low half, then the sign bit is cleared so the index is never negative.
+     * Small dense hash codes, like host ids, are left as they are and fill the lists evenly.
+     * @param hashCode the hash code of a key
+     * @return the spread hash code (never negative)
+     */
+    private static int spread(int hashCode) {
+        return (hashCode ^ (hashCode >>> 16)) & 0x7fffffff;
+    }
+    
     /**
      * Compute the index of the given key from the internal storage's capacity.
      * @param key the given key
      * @return the index of the array using seperate chaining
      */
     public int getIndex(K key) {
-        int hashCode = key.hashCode();
-        int index = hashCode % storage.length;
-        return index;
+        return getIndex(key, storage.length);
     }
+    /**
+     * Grow the number of lists to at least the given size, keeping every list at its index.
+     * This is for collections indexed directly by id (like the network's adjacency lists),
+     * hashed collections should use resize() instead.
+     * @param numLists the minimum number of lists
+     */
+    public void ensureCapacity(int numLists) {
+        if (numLists > storage.length) {
+            storage = java.util.Arrays.copyOf(storage, numLists);
+        }
+    }
+    
     /**
      * Resize the internal storage (rehash) 
      * If the load goes above 3 after adding an entry
@@ -89,7 +153,6 @@ public class ArrayOfListsOfPairs<K,V> {
         for (int i = 0; i < storage.length; i++) {
             Node<K, V> temp = storage[i];
             while (temp != null) {
-                int index = getIndex(temp.pair.getKey(), arr.storage.length);
                 arr.addPair(temp.pair.getKey(), temp.pair.getValue());
                 temp = temp.next;
             }
@@ -100,8 +163,9 @@ public class ArrayOfListsOfPairs<K,V> {
      * Replace the value of the given key with its new given value.
      * @param key the key of the value
      * @param value the new value
+     * @return true if the key was found, false otherwise
      */
-    public void replaceValue(K key, V value) {
+    public boolean replaceValue(K key, V value) {
         // Get the index of the given key.
         int index = getIndex(key);
         // Get the head of the linked list that contains the given key at the computed index.
@@ -114,10 +178,11 @@ public class ArrayOfListsOfPairs<K,V> {
             if (head.pair.getKey().equals(key)){
                 KeyValuePair<K, V> newPair = new KeyValuePair<>(key, value);
                 head.pair = newPair;
-                break;
+                return true;
             }
             head = head.next;
         }
+        return false;
     }
     /**
      * Get the associated value of the given key.
@@ -268,6 +333,59 @@ public class ArrayOfListsOfPairs<K,V> {
         return lst;
     }
     
+    /**
+     * Returns the first node of the list at the given index, so the list can be walked
+     * (following next until it is null) without copying it like getAllPairs() does.
+     * The nodes must not be changed.
+     * @param listId the given index (id)
+     * @return the first node of the list, or null if the list is empty
+     */
+    public Node<K,V> getHead(int listId) {
+        return storage[listId];
+    }
+    
+    /**
+     * Returns the number of key-value pairs in the specified sublist without copying it.
+     * @param listId the given index (id)
+     * @return the number of pairs in the list
+     */
+    public int getListSize(int listId) {
+        int size = 0;
+        for (Node<K,V> current = storage[listId]; current != null; current = current.next) {
+            size++;
+        }
+        return size;
+    }
+    
+    /**
+     * Gives each key-value pair in the specified sublist to the action, in list order,
+     * without copying the list. The action must not change this collection.
+     * @param listId the given index (id)
+     * @param action what to do with each key and value
+     */
+    public void forEach(int listId, java.util.function.BiConsumer<? super K, ? super V> action) {
+        for (Node<K,V> current = storage[listId]; current != null; current = current.next) {
+            action.accept(current.pair.getKey(), current.pair.getValue());
+        }
+    }
+    
+    /**
+     * Estimates the memory used by this collection: the array of list heads plus
+     * one node and one key-value pair for each entry (not counting the keys and values).
+     * Assumes 12 byte object headers, 4 byte references and 8 byte alignment.
+     * @return the estimated size in bytes
+     */
+    public long memoryFootprint() {
+        long entries = 0;
+        for (int i = 0; i < storage.length; i++) {
+            for (Node<K,V> current = storage[i]; current != null; current = current.next) {
+                entries++;
+            }
+        }
+        // Array: 16 byte header + 4 bytes per slot. Node and KeyValuePair: 12 + 4 + 4 -> 24 bytes each.
+        return 16L + 4L * storage.length + 48L * entries;
+    }
+    
     /**Returns all key-value pairs in this collection.
       * @return all key-value pairs in this collection
       */
@@ -0,0 +1,357 @@
+import edu.uci.ics.jung.algorithms.generators.random.ErdosRenyiGeneratorDirected;
+
+import org.apache.commons.collections15.Factory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  What the benchmark harnesses share: the networks they route
+ *  on, how they time and measure work, how they read sizes from
+ *  the command line and how they print a result line.
+ */
+final class BenchmarkSupport {
+    /**
+     *  The average number of connections leaving a host
+     *  in the generated networks.
+     */
+    static final double AVG_OUT_DEGREE = 8.0;
+
+    /**
+     *  Number of messages sent when measuring routing.
+     */
+    static final int MESSAGES = 2000;
+
+    /**
+     *  Number of hosts routed from when a network is too
+     *  big to route from every host.
+     */
+    static final int SAMPLED_SOURCES = 20;
+
+    /**
+     *  Number of untimed runs before measuring.
+     */
+    static final int WARMUP_RUNS = 3;
+
+    /**
+     *  Number of timed runs to average over.
+     */
+    static final int TIMED_RUNS = 5;
+
+    /**
+     *  Something for results to be written to so the
+     *  JIT can't throw the work away.
+     */
+    static long sink = 0;
+
+    /**
+     *  Not used, the class only holds helpers.
+     */
+    private BenchmarkSupport() {
+    }
+
+    /**
+     *  Generates a random network with the given number
+     *  of hosts using the same generator as the GUI.
+     *  @param numNodes the number of hosts
+     *  @param seed the seed for the generator
+     *  @return the generated network
+     */
+    static Network genGraph(int numNodes, long seed) {
+        SimulationContext context = new SimulationContext();
+        double prob = Math.min(1.0, AVG_OUT_DEGREE / numNodes);
+        ErdosRenyiGeneratorDirected<Host,Connection> gen = new ErdosRenyiGeneratorDirected<Host,Connection>(
+                                                                                                            context.getNetworkFactory(),
+                                                                                                            context.getHostFactory(), context.getConnectionFactory(),
+                                                                                                            numNodes, prob
+                                                                                                           );
+        gen.setSeed(seed);
+        return (Network) gen.create();
+    }
+
+    /**
+     *  Generates a random sparse network by connecting random
+     *  pairs of hosts. Unlike the Erdos-Renyi generator this
+     *  doesn't look at every pair, so it can make very large
+     *  networks.
+     *  @param numNodes the number of hosts
+     *  @param numEdges the number of connections
+     *  @param seed the seed for the generator
+     *  @return the generated network
+     */
+    static Network genSparseGraph(int numNodes, int numEdges, long seed) {
+        SimulationContext context = new SimulationContext();
+        Random rand = new Random(seed);
+        Factory<Host> nodeFactory = context.getHostFactory();
+        Factory<Connection> edgeFactory = context.getConnectionFactory();
+
+        Network graph = new Network(context);
+        Host[] hosts = new Host[numNodes];
+        for(int i = 0; i < numNodes; i++) {
+            hosts[i] = nodeFactory.create();
+            graph.addVertex(hosts[i]);
+        }
+        int added = 0;
+        while(added < numEdges) {
+            Host from = hosts[rand.nextInt(numNodes)];
+            Host to = hosts[rand.nextInt(numNodes)];
+            if(!from.equals(to) && graph.addEdge(edgeFactory.create(), from, to)) {
+                added++;
+            }
+        }
+        return graph;
+    }
+
+    /**
+     *  Generates a random sparse network with the average out
+     *  degree of the other generated networks.
+     *  @param numNodes the number of hosts
+     *  @return the generated network
+     */
+    static Network genSparseGraph(int numNodes) {
+        return genSparseGraph(numNodes, (int) (numNodes * AVG_OUT_DEGREE), 0);
+    }
+
+    /**
+     *  Generates a random sparse network with the bulk loader.
+     *  Connections are random pairs of different hosts with
+     *  weights between 1 and 10; repeated pairs are only added
+     *  once, so there can be a few less connections than asked for.
+     *  @param numNodes the number of hosts
+     *  @param numEdges the number of connections to try
+     *  @param seed the seed for the generator
+     *  @return the generated network
+     */
+    static Network genBulkGraph(int numNodes, int numEdges, long seed) {
+        Random rand = new Random(seed);
+        int[] sources = new int[numEdges];
+        int[] dests = new int[numEdges];
+        int[] weights = new int[numEdges];
+        for(int i = 0; i < numEdges; i++) {
+            sources[i] = rand.nextInt(numNodes);
+            do {
+                dests[i] = rand.nextInt(numNodes);
+            } while(numNodes > 1 && dests[i] == sources[i]);
+            weights[i] = rand.nextInt(10) + 1;
+        }
+        Network graph = new Network(new SimulationContext(seed));
+        graph.addHosts(numNodes);
+        graph.addEdges(sources, dests, weights);
+        return graph;
+    }
+
+    /**
+     *  Generates a chain of hosts where each host is connected
+     *  to the next one and back. Shortest paths are as long as
+     *  they can be, so this is the worst case for anything that
+     *  walks paths.
+     *  @param numNodes the number of hosts
+     *  @return the generated network
+     */
+    static Network genChain(int numNodes) {
+        SimulationContext context = new SimulationContext();
+        Factory<Host> nodeFactory = context.getHostFactory();
+        Factory<Connection> edgeFactory = context.getConnectionFactory();
+
+        Network graph = new Network(context);
+        Host prev = null;
+        for(int i = 0; i < numNodes; i++) {
+            Host h = nodeFactory.create();
+            graph.addVertex(h);
+            if(prev != null) {
+                graph.addEdge(edgeFactory.create(), prev, h);
+                graph.addEdge(edgeFactory.create(), h, prev);
+            }
+            prev = h;
+        }
+        return graph;
+    }
+
+    /**
+     *  Generates a square grid of hosts where each host is
+     *  connected to its neighbors in both directions.
+     *  @param side the number of hosts along each side
+     *  @return the generated network
+     */
+    static Network genGrid(int side) {
+        SimulationContext context = new SimulationContext();
+        Factory<Host> nodeFactory = context.getHostFactory();
+        Factory<Connection> edgeFactory = context.getConnectionFactory();
+
+        Network graph = new Network(context);
+        Host[] hosts = new Host[side * side];
+        for(int i = 0; i < hosts.length; i++) {
+            hosts[i] = nodeFactory.create();
+            graph.addVertex(hosts[i]);
+        }
+        for(int row = 0; row < side; row++) {
+            for(int col = 0; col < side; col++) {
+                Host h = hosts[row * side + col];
+                if(col + 1 < side) {
+                    graph.addEdge(edgeFactory.create(), h, hosts[row * side + col + 1]);
+                    graph.addEdge(edgeFactory.create(), hosts[row * side + col + 1], h);
+                }
+                if(row + 1 < side) {
+                    graph.addEdge(edgeFactory.create(), h, hosts[(row + 1) * side + col]);
+                    graph.addEdge(edgeFactory.create(), hosts[(row + 1) * side + col], h);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     *  Picks random hosts of a network (the same host can
+     *  be picked more than once).
+     *  @param graph the network
+     *  @param count the number of hosts to pick
+     *  @param seed the seed for the picks
+     *  @return the hosts
+     */
+    static List<Host> pickHosts(Network graph, int count, long seed) {
+        Host[] all = graph.getVertices().toArray(new Host[0]);
+        Random rand = new Random(seed);
+        List<Host> hosts = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            hosts.add(all[rand.nextInt(all.length)]);
+        }
+        return hosts;
+    }
+
+    /**
+     *  Runs some work WARMUP_RUNS times untimed and then
+     *  TIMED_RUNS times timed.
+     *  @param work the work to time
+     *  @return the average time of a timed run in nanoseconds
+     */
+    static double averageTime(Runnable work) {
+        for(int i = 0; i < WARMUP_RUNS; i++) {
+            work.run();
+        }
+        long total = 0;
+        for(int i = 0; i < TIMED_RUNS; i++) {
+            long t0 = System.nanoTime();
+            work.run();
+            total += System.nanoTime() - t0;
+        }
+        return (double) total / TIMED_RUNS;
+    }
+
+    /**
+     *  Runs some work WARMUP_RUNS times untimed and then
+     *  TIMED_RUNS times timed.
+     *  @param work the work to time
+     *  @return the time of the fastest timed run in nanoseconds
+     */
+    static long bestTime(Runnable work) {
+        for(int i = 0; i < WARMUP_RUNS; i++) {
+            work.run();
+        }
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < TIMED_RUNS; i++) {
+            long t0 = System.nanoTime();
+            work.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best;
+    }
+
+    /**
+     *  Sends one message and returns how long it took.
+     *  @param alg the routing code
+     *  @param source the source host
+     *  @param dest the destination host
+     *  @return the time in nanoseconds
+     */
+    static long timeMessage(ThreeTenNetwork alg, Host source, Host dest) {
+        long t0 = System.nanoTime();
+        if(alg.step(source, dest)) {
+            while(alg.step(dest)) {
+                //keep going
+            }
+        }
+        return System.nanoTime() - t0;
+    }
+
+    /**
+     *  Returns the number of bytes the current thread has
+     *  allocated so far, if the JVM can tell.
+     *  @return the bytes allocated, or -1 if unknown
+     */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     *  Returns the total number of collections the garbage
+     *  collectors have done so far.
+     *  @return the number of collections
+     */
+    static long gcCount() {
+        long count = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(bean.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     *  Reads the sizes to try from the command line.
+     *  @param args the command line arguments
+     *  @param from the first argument that is a size
+     *  @param defaults the sizes to try if none are given
+     *  @return the sizes
+     */
+    static int[] sizes(String[] args, int from, int... defaults) {
+        if(args.length <= from) return defaults;
+        int[] sizes = new int[args.length - from];
+        for(int i = from; i < args.length; i++) {
+            sizes[i - from] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+
+    /**
+     *  Reads a number from the command line.
+     *  @param args the command line arguments
+     *  @param i the position of the number
+     *  @param def the number to use if it isn't given
+     *  @return the number
+     */
+    static int intArg(String[] args, int i, int def) {
+        return (args.length > i) ? Integer.parseInt(args[i]) : def;
+    }
+
+    /**
+     *  Prints a result line: a short tag saying what was
+     *  measured, then the formatted results.
+     *  @param tag what was measured, at most 7 characters to line up
+     *  @param format the format of the results
+     *  @param values the results
+     */
+    static void print(String tag, String format, Object... values) {
+        System.out.printf("%-7s " + format + "%n", prepend(tag, values));
+    }
+
+    /**
+     *  Puts a value in front of an array of values.
+     *  @param first the value to put first
+     *  @param rest the other values
+     *  @return the values
+     */
+    private static Object[] prepend(Object first, Object[] rest) {
+        Object[] all = new Object[rest.length + 1];
+        all[0] = first;
+        System.arraycopy(rest, 0, all, 1, rest.length);
+        return all;
+    }
+}
@@ -0,0 +1,310 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Finds a shortest path between two hosts with bidirectional
+ *  Dijkstra: one search goes forward from the source along
+ *  outgoing connections, another goes backward from the
+ *  destination along incoming connections, and the search stops
+ *  once the two frontiers can no longer improve the best path
+ *  where they meet. This usually settles far fewer hosts than
+ *  a search from the source alone, and no routing table is built.
+ *
+ *  <p>The arrays used by the search are kept and reused between
+ *  queries (only the entries a query touched are cleared), so
+ *  one search must not be used from two threads at once.
+ */
+public class BidirectionalSearch {
+    /**
+     *  The forward distance of each host id from the source.
+     */
+    private int[] distForward = new int[0];
+
+    /**
+     *  The backward distance of each host id to the destination.
+     */
+    private int[] distBackward = new int[0];
+
+    /**
+     *  The host before each host on its forward path, -1 if none.
+     */
+    private int[] parentForward = new int[0];
+
+    /**
+     *  The host after each host on its backward path, -1 if none.
+     */
+    private int[] parentBackward = new int[0];
+
+    /**
+     *  The ids the current query has given a distance to.
+     */
+    private int[] touched = new int[0];
+
+    /**
+     *  The number of ids in touched.
+     */
+    private int numTouched = 0;
+
+    /**
+     *  The forward frontier.
+     */
+    private IndexedMinHeap forward = new IndexedMinHeap(0);
+
+    /**
+     *  The backward frontier.
+     */
+    private IndexedMinHeap backward = new IndexedMinHeap(0);
+
+    /**
+     *  The number of hosts settled by the last query.
+     */
+    private int lastSettled = 0;
+
+    /**
+     *  Returns how many hosts the last query settled (took out
+     *  of either frontier).
+     *  @return the number of hosts settled
+     */
+    public int getLastSettled() {
+        return lastSettled;
+    }
+
+    /**
+     *  Finds a shortest path from a source to a destination.
+     *  When there are several shortest paths, the one returned
+     *  may not be the one the routing tables use, but its cost
+     *  is the same.
+     *  @param graph the network
+     *  @param source the source host
+     *  @param dest the destination host
+     *  @return the path, or null if the destination can't be reached
+     *      (or either host is not in the network)
+     */
+    public Path find(Network graph, Host source, Host dest) {
+        lastSettled = 0;
+        if(!graph.containsVertex(source) || !graph.containsVertex(dest)) return null;
+        if(source.equals(dest)) {
+            List<Host> hops = new ArrayList<>();
+            hops.add(source);
+            return new Path(hops, 0);
+        }
+        ensureCapacity(graph.getIdBound());
+
+        try {
+            int s = source.getId();
+            int t = dest.getId();
+            touch(s);
+            distForward[s] = 0;
+            forward.add(s, 0);
+            touch(t);
+            distBackward[t] = 0;
+            backward.add(t, 0);
+
+            //the shortest path found so far goes through meet
+            long best = Long.MAX_VALUE;
+            int meet = -1;
+
+            while(!forward.isEmpty() && !backward.isEmpty()) {
+                //nothing left in either frontier can beat the best path
+                if((long) forward.getKey(forward.peek()) + backward.getKey(backward.peek()) >= best) break;
+
+                //grow the smaller frontier
+                boolean goForward = forward.size() <= backward.size();
+                IndexedMinHeap queue = goForward ? forward : backward;
+                int[] dist = goForward ? distForward : distBackward;
+                int[] parent = goForward ? parentForward : parentBackward;
+                int[] otherDist = goForward ? distBackward : distForward;
+
+                int u = queue.poll();
+                lastSettled++;
+                Host host = graph.getHost(u);
+                for(Connection c : goForward ? graph.getOutEdges(host) : graph.getInEdges(host)) {
+                    int v = (goForward ? graph.getDest(c) : graph.getSource(c)).getId();
+                    int newCost = dist[u] + c.getWeight();
+                    if(newCost < dist[v]) {
+                        if(dist[v] == Integer.MAX_VALUE && otherDist[v] == Integer.MAX_VALUE) touch(v);
+                        dist[v] = newCost;
+                        parent[v] = u;
+                        if(queue.contains(v)) queue.decreaseKey(v, newCost);
+                        else queue.add(v, newCost);
+                    }
+                    //the connection may join the two searches
+                    if(otherDist[v] != Integer.MAX_VALUE && (long) dist[v] + otherDist[v] < best) {
+                        best = (long) dist[v] + otherDist[v];
+                        meet = v;
+                    }
+                }
+            }
+
+            if(meet == -1) return null;
+            return buildPath(graph, meet, (int) best);
+        }
+        finally {
+            reset();
+        }
+    }
+
+    /**
+     *  Puts the path through a meeting host together from
+     *  the two searches.
+     *  @param graph the network
+     *  @param meet the id of the host where the searches meet
+     *  @param cost the cost of the path
+     *  @return the path
+     */
+    private Path buildPath(Network graph, int meet, int cost) {
+        List<Host> hops = new ArrayList<>();
+        for(int id = meet; id != -1; id = parentForward[id]) {
+            hops.add(graph.getHost(id));
+        }
+        Collections.reverse(hops);
+        for(int id = parentBackward[meet]; id != -1; id = parentBackward[id]) {
+            hops.add(graph.getHost(id));
+        }
+        return new Path(hops, cost);
+    }
+
+    /**
+     *  Records that the current query gave an id a distance.
+     *  @param id the host id
+     */
+    private void touch(int id) {
+        if(numTouched == touched.length) {
+            touched = Arrays.copyOf(touched, Math.max(16, touched.length * 2));
+        }
+        touched[numTouched++] = id;
+    }
+
+    /**
+     *  Clears everything the last query touched.
+     */
+    private void reset() {
+        for(int i = 0; i < numTouched; i++) {
+            int id = touched[i];
+            distForward[id] = Integer.MAX_VALUE;
+            distBackward[id] = Integer.MAX_VALUE;
+            parentForward[id] = -1;
+            parentBackward[id] = -1;
+        }
+        numTouched = 0;
+        forward.clear();
+        backward.clear();
+    }
+
+    /**
+     *  Makes sure the arrays can hold every host id.
+     *  @param idBound one more than the largest host id
+     */
+    private void ensureCapacity(int idBound) {
+        if(idBound <= distForward.length) return;
+        distForward = new int[idBound];
+        distBackward = new int[idBound];
+        parentForward = new int[idBound];
+        parentBackward = new int[idBound];
+        Arrays.fill(distForward, Integer.MAX_VALUE);
+        Arrays.fill(distBackward, Integer.MAX_VALUE);
+        Arrays.fill(parentForward, -1);
+        Arrays.fill(parentBackward, -1);
+        forward = new IndexedMinHeap(idBound);
+        backward = new IndexedMinHeap(idBound);
+    }
+
+    /**
+     *  Returns the cheapest connection weight from one host to
+     *  another, or -1 if they aren't connected.
+     *  @param graph the network
+     *  @param from the host the connection leaves
+     *  @param to the host the connection goes to
+     *  @return the weight
+     */
+    private static int cheapestWeight(Network graph, Host from, Host to) {
+        Collection<Connection> edges = graph.findEdgeSet(from, to);
+        if(edges == null) return -1;
+        int weight = -1;
+        for(Connection c : edges) {
+            if(weight == -1 || c.getWeight() < weight) weight = c.getWeight();
+        }
+        return weight;
+    }
+
+    /**
+     *  Checks the paths found against the routes full Dijkstra
+     *  searches give: a path must exist exactly when a route does,
+     *  follow connections of the graph, cost what its connections
+     *  add up to, and cost the same as the route.
+     *  The graphs are changed between queries, so the arrays kept
+     *  between queries are checked too.
+     *  @param rand the random number generator
+     *  @return true if every check passed
+     */
+    private static boolean checkPaths(Random rand) {
+        BidirectionalSearch search = new BidirectionalSearch();
+        for(int trial = 0; trial < 30; trial++) {
+            int numNodes = 10 + 3 * trial;
+            Network graph = new Network(new SimulationContext(rand.nextLong()));
+            Host[] hosts = graph.addHosts(numNodes);
+            for(int i = 0; i < 2 * numNodes; i++) {
+                graph.addEdge(graph.getContext().newConnection(), hosts[rand.nextInt(numNodes)], hosts[rand.nextInt(numNodes)]);
+            }
+            for(int step = 0; step < 10; step++) {
+                //remove a host, so the ids have a gap
+                List<Host> alive = new ArrayList<>(graph.getVertices());
+                if(step % 3 == 2 && alive.size() > 2) {
+                    graph.removeVertex(alive.remove(rand.nextInt(alive.size())));
+                }
+                Host source = alive.get(rand.nextInt(alive.size()));
+                ThreeTenNetwork full = new ThreeTenNetwork();
+                full.setColoring(false);
+                full.reset(graph);
+                full.start();
+
+                for(Host dest : alive) {
+                    Path path = search.find(graph, source, dest);
+
+                    //the cost of the route the routing table takes
+                    long expected = 0;
+                    Host at = source;
+                    while(at != null && !at.equals(dest)) {
+                        int next = full.nextHop(at.getId(), dest.getId());
+                        Host nextHost = (next == NextHopMatrix.NO_ROUTE) ? null : graph.getHost(next);
+                        if(nextHost != null) {
+                            int weight = cheapestWeight(graph, at, nextHost);
+                            if(weight == -1) return false;
+                            expected += weight;
+                        }
+                        at = nextHost;
+                    }
+
+                    if(at == null) {
+                        if(path != null) return false;
+                        continue;
+                    }
+                    if(path == null || path.getSource() != source || path.getDest() != dest) return false;
+                    long cost = 0;
+                    List<Host> hops = path.getHops();
+                    for(int i = 0; i + 1 < hops.size(); i++) {
+                        int weight = cheapestWeight(graph, hops.get(i), hops.get(i + 1));
+                        if(weight == -1) return false;
+                        cost += weight;
+                    }
+                    if(cost != path.getCost() || cost != expected) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     *  Main method of the class which is used for testing.
+     *  @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if(checkPaths(new Random(1))) {
+            System.out.println("Yay");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.Arrays;
+
+/**
+ *  A bucket queue (Dial's algorithm) for small integer keys.
+ *  When every edge weight is between 1 and maxWeight, all the
+ *  keys waiting in Dijkstra's queue lie within maxWeight of the
+ *  current distance, so a circular array of maxWeight+1 buckets
+ *  holds them and add/decreaseKey are O(1).
+ *
+ *  <p>Lowering a key just drops the id into its new bucket; the
+ *  old entry is skipped when its bucket is reached. A bucket is
+ *  sorted by id before it is emptied so ties come out in the same
+ *  order as IndexedMinHeap.
+ */
+public class BucketQueue implements ShortestPathQueue {
+    /**
+     *  The buckets, bucket i holds ids whose key is i modulo the
+     *  number of buckets.
+     */
+    private int[][] buckets;
+
+    /**
+     *  The number of entries (live or stale) in each bucket.
+     */
+    private int[] bucketSizes;
+
+    /**
+     *  The key of each id.
+     */
+    private int[] keys;
+
+    /**
+     *  Whether each id is in the queue.
+     */
+    private boolean[] queued;
+
+    /**
+     *  The key of the bucket being emptied.
+     */
+    private int current = 0;
+
+    /**
+     *  How far into the current bucket poll() has got.
+     */
+    private int drained = 0;
+
+    /**
+     *  Whether the current bucket has been sorted yet.
+     */
+    private boolean sorted = false;
+
+    /**
+     *  The number of ids in the queue with a finite key.
+     */
+    private int live = 0;
+
+    /**
+     *  The number of ids in the queue.
+     */
+    private int size = 0;
+
+    /**
+     *  Creates an empty queue for the ids 0 to capacity-1.
+     *  @param capacity one more than the largest id that will be stored
+     *  @param maxWeight the largest edge weight in the graph
+     *  @throws IllegalArgumentException if maxWeight is less than 1
+     */
+    public BucketQueue(int capacity, int maxWeight) {
+        if(maxWeight < 1) {
+            throw new IllegalArgumentException("Bucket queues need a maximum weight of at least 1.");
+        }
+        buckets = new int[maxWeight + 1][];
+        bucketSizes = new int[maxWeight + 1];
+        for(int i = 0; i < buckets.length; i++) {
+            buckets[i] = new int[4];
+        }
+        keys = new int[capacity];
+        queued = new boolean[capacity];
+    }
+
+    /**
+     *  {@inheritDoc}
+     *  @throws IllegalArgumentException if the id is already in the queue
+     *      or the key is out of range for the buckets
+     */
+    public void add(int id, int key) {
+        if(queued[id]) {
+            throw new IllegalArgumentException("Id " + id + " is already in the queue.");
+        }
+        queued[id] = true;
+        keys[id] = key;
+        size++;
+        if(key != Integer.MAX_VALUE) {
+            place(id, key);
+        }
+    }
+
+    /**
+     *  {@inheritDoc}
+     *  @throws IllegalArgumentException if the id is not in the queue
+     *      or the key is out of range for the buckets
+     */
+    public void decreaseKey(int id, int key) {
+        if(!queued[id] || key > keys[id]) {
+            throw new IllegalArgumentException("Cannot decrease the key of id " + id + ".");
+        }
+        if(key == keys[id]) return;
+        if(keys[id] != Integer.MAX_VALUE) {
+            //the old entry stays behind and is skipped later
+            live--;
+        }
+        keys[id] = key;
+        place(id, key);
+    }
+
+    /**
+     *  {@inheritDoc}
+     *  Ids with a key of Integer.MAX_VALUE are never returned.
+     */
+    public int poll() {
+        if(live == 0) return -1;
+
+        while(true) {
+            int b = current % buckets.length;
+            if(!sorted) {
+                Arrays.sort(buckets[b], 0, bucketSizes[b]);
+                sorted = true;
+                drained = 0;
+            }
+            while(drained < bucketSizes[b]) {
+                int id = buckets[b][drained++];
+                if(queued[id] && keys[id] == current) {
+                    queued[id] = false;
+                    live--;
+                    size--;
+                    return id;
+                }
+            }
+            //bucket is used up, move on to the next distance
+            bucketSizes[b] = 0;
+            current++;
+            sorted = false;
+        }
+    }
+
+    /**
+     *  {@inheritDoc}
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     *  Puts an id into the bucket for its key.
+     *  @param id the id
+     *  @param key the key, which must be within the range of the buckets
+     */
+    private void place(int id, int key) {
+        //keys behind the current bucket, or in it once it has
+        //started emptying, would break the id ordering
+        if(key < current || key - current >= buckets.length || (key == current && sorted)) {
+            throw new IllegalArgumentException("Key " + key + " is out of range for the buckets.");
+        }
+        int b = key % buckets.length;
+        if(bucketSizes[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], buckets[b].length * 2);
+        }
+        buckets[b][bucketSizes[b]++] = id;
+        live++;
+    }
+}
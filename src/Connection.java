@@ -1,6 +1,4 @@
-import org.apache.commons.collections15.Factory;
 import java.awt.Color;
-import java.util.Random;
 
 /**
  *  A host in the network.
@@ -8,37 +6,70 @@ import java.util.Random;
  */
 public class Connection {
     /**
-     *  The last id given to a connection.
+     *  The unique id of this connection.
      */
-    public static int LAST_ID = -1;
+    private final int id;
     
     /**
-     *  A random number generator. Do not change the seed!
+     *  The weight of the edge.
      */
-    private static final Random rand = new Random(0);
+    private final int weight;
     
     /**
-     *  The unique id of this connection.
+     *  The color of this connection in the visualization, or null
+     *  for the default color (so making a connection doesn't load AWT).
      */
-    private final int id;
+    private Color color = null;
     
     /**
-     *  The weight of the edge.
+     *  The capacity of a connection that never makes
+     *  packets wait.
      */
-    private final int weight;
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    
+    /**
+     *  How many packets a connection's queue holds
+     *  unless told otherwise.
+     */
+    public static final int DEFAULT_QUEUE_LIMIT = 64;
+    
+    /**
+     *  How many packets the connection can start sending
+     *  per unit of simulated time.
+     */
+    private int capacity = UNLIMITED;
+    
+    /**
+     *  The most packets the queue holds. Each simulator
+     *  keeps the queue itself.
+     */
+    private int queueLimit = DEFAULT_QUEUE_LIMIT;
+    
+    /**
+     *  The drop policy connections start with. Policies
+     *  keep no state of their own, so one is shared.
+     */
+    private static final DropPolicy DROP_TAIL = new DropTailPolicy();
     
     /**
-     *  The color of this connection in the visualization.
+     *  Decides which arriving packets are dropped.
      */
-    private Color color = Color.BLACK;
+    private DropPolicy dropPolicy = DROP_TAIL;
     
     /**
-     *  Makes a new connections with a random weight between
-     *  1 and 10.
+     *  Makes a connection with a given id and weight. New
+     *  connections get their ids and (random) weights from
+     *  a SimulationContext.
+     *  @param id the unique identifier of the connection
+     *  @param weight the weight of the connection
+     *  @throws IllegalArgumentException if the id is negative or the weight is less than 1
      */
-    private Connection() {
-        id = ++LAST_ID;
-        weight = rand.nextInt(10)+1;
+    public Connection(int id, int weight) {
+        if(id < 0 || weight < 1) {
+            throw new IllegalArgumentException("Cannot create a connection with a negative id or a weight below 1.");
+        }
+        this.id = id;
+        this.weight = weight;
     }
     
     /**
@@ -54,7 +85,7 @@ public class Connection {
      *  @return the connection's current color
      */
     public Color getColor() {
-        return color;
+        return (color == null) ? ThreeTenNetwork.Colors.NONE_EDGE : color;
     }
     
     /**
@@ -66,6 +97,71 @@ public class Connection {
         return weight;
     }
     
+    /**
+     *  Returns how many packets the connection can start sending
+     *  per unit of simulated time.
+     *  @return the capacity, or UNLIMITED
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     *  Sets how many packets the connection can start sending
+     *  per unit of simulated time. Packets that can't be sent
+     *  right away wait in the connection's queue. Simulators
+     *  made afterwards use the new capacity.
+     *  @param capacity the capacity, or UNLIMITED
+     *  @throws IllegalArgumentException if the capacity is less than 1
+     */
+    public void setCapacity(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        this.capacity = capacity;
+    }
+    
+    /**
+     *  Returns how many packets can wait to be sent.
+     *  @return the most packets the queue holds
+     */
+    public int getQueueLimit() {
+        return queueLimit;
+    }
+    
+    /**
+     *  Sets how many packets can wait to be sent. Simulators
+     *  made afterwards use the new limit.
+     *  @param limit the most packets the queue holds
+     *  @throws IllegalArgumentException if the limit is less than 1
+     */
+    public void setQueueLimit(int limit) {
+        if(limit < 1) {
+            throw new IllegalArgumentException("A queue must hold at least one packet.");
+        }
+        queueLimit = limit;
+    }
+    
+    /**
+     *  Returns the policy deciding which arriving packets are dropped.
+     *  @return the drop policy
+     */
+    public DropPolicy getDropPolicy() {
+        return dropPolicy;
+    }
+    
+    /**
+     *  Sets the policy deciding which arriving packets are dropped.
+     *  @param dropPolicy the drop policy
+     *  @throws IllegalArgumentException if the policy is null
+     */
+    public void setDropPolicy(DropPolicy dropPolicy) {
+        if(dropPolicy == null) {
+            throw new IllegalArgumentException("A connection needs a drop policy.");
+        }
+        this.dropPolicy = dropPolicy;
+    }
+    
     /**
      *  Sets the color of the connection in the simulation.
      *  @param color the new color to use
@@ -104,18 +200,4 @@ public class Connection {
         }
         return false;
     }
-    
-    /**
-     *  This is a code pattern called a "factory".
-     *  A factory for connections makes instances of
-     *  connections!
-     *  @return a factory that can make connections
-     */
-    public static Factory<Connection> getFactory() { 
-        return new Factory<Connection> () {
-            public Connection create() {
-                return new Connection();
-            }
-        };
-    }
 }
@@ -0,0 +1,18 @@
+import java.util.Random;
+
+/**
+ *  Decides whether a packet arriving at a connection's
+ *  queue is dropped instead of queued.
+ */
+public interface DropPolicy {
+    /**
+     *  Decides whether to drop an arriving packet.
+     *  @param queue the queue the packet arrived at
+     *  @param idleSlots how many packets the connection could have
+     *      sent while the queue sat empty before this packet arrived
+     *      (0 if the queue wasn't empty)
+     *  @param rand the simulation's random number generator
+     *  @return true to drop the packet
+     */
+    boolean shouldDrop(LinkQueue queue, long idleSlots, Random rand);
+}
@@ -0,0 +1,25 @@
+import java.util.Random;
+
+/**
+ *  Drops a packet only when the queue is full.
+ */
+public class DropTailPolicy implements DropPolicy {
+    /**
+     *  Drops the packet if there is no room for it.
+     *  @param queue the queue the packet arrived at
+     *  @param idleSlots not used
+     *  @param rand not used
+     *  @return true if the queue is full
+     */
+    public boolean shouldDrop(LinkQueue queue, long idleSlots, Random rand) {
+        return queue.isFull();
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "drop-tail";
+    }
+}
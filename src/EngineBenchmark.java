@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Times the shortest path engines: computing every routing
+ *  table, routing from sampled hosts of networks too big for
+ *  that, deep topologies, point to point queries and how much
+ *  routing allocates.
+ *
+ *  <p>Usage: java EngineBenchmark [hosts...]
+ *  <br>or: java EngineBenchmark sampled [hosts...]
+ *  <br>or: java EngineBenchmark deep [hosts...]
+ *  <br>or: java EngineBenchmark large [connections] [sources]
+ *  <br>or: java EngineBenchmark query [hosts...]
+ *  <br>or: java EngineBenchmark alloc [hosts...]
+ */
+class EngineBenchmark {
+    /**
+     *  Times all-pairs routing (ThreeTenNetwork.start()) on a
+     *  network with one thread and prints the best of the timed
+     *  runs for each engine.
+     *  @param numNodes the number of hosts
+     */
+    static void benchStart(int numNodes) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        for(ThreeTenNetwork.Engine engine : ThreeTenNetwork.Engine.values()) {
+            final ThreeTenNetwork alg = new ThreeTenNetwork();
+            alg.setColoring(false);
+            alg.setEngine(engine);
+            alg.reset(graph);
+            long best = BenchmarkSupport.bestTime(new Runnable() {
+                public void run() {
+                    alg.start();
+                }
+            });
+            BenchmarkSupport.print("start()", "%-6s hosts=%-7d edges=%-8d %10.3f ms  %.3f ms/source",
+                                   engine, graph.getVertexCount(), graph.getEdgeCount(), best / 1e6,
+                                   best / (1e6 * numNodes));
+        }
+    }
+
+    /**
+     *  Times routing from a few sampled hosts of a network.
+     *  @param tag what to print the result as
+     *  @param name the name of the topology to print
+     *  @param graph the network
+     *  @param engine the shortest path engine to use
+     */
+    static void benchSources(String tag, String name, Network graph, ThreeTenNetwork.Engine engine) {
+        final List<Host> sources = BenchmarkSupport.pickHosts(graph, BenchmarkSupport.SAMPLED_SOURCES, 1);
+        final ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setColoring(false);
+        alg.setEngine(engine);
+        alg.reset(graph);
+        double average = BenchmarkSupport.averageTime(new Runnable() {
+            public void run() {
+                alg.start(sources);
+            }
+        });
+        BenchmarkSupport.print(tag, "%-6s %-6s hosts=%-7d edges=%-8d %.3f ms/source",
+                               name, engine, graph.getVertexCount(), graph.getEdgeCount(),
+                               average / (1e6 * sources.size()));
+    }
+
+    /**
+     *  Builds a large sparse network and routes from a
+     *  few of its hosts.
+     *  @param numEdges the number of connections
+     *  @param numSources the number of hosts to route from
+     */
+    static void benchLarge(int numEdges, int numSources) {
+        int numNodes = (int) (numEdges / BenchmarkSupport.AVG_OUT_DEGREE);
+
+        long t0 = System.nanoTime();
+        Network graph = BenchmarkSupport.genSparseGraph(numNodes, numEdges, 0);
+        long buildNanos = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        NetworkSnapshot snapshot = graph.snapshot();
+        long snapshotNanos = System.nanoTime() - t0;
+
+        List<Host> sources = BenchmarkSupport.pickHosts(graph, numSources, 1);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.reset(graph);
+        t0 = System.nanoTime();
+        alg.start(sources);
+        long routeNanos = System.nanoTime() - t0;
+
+        BenchmarkSupport.print("large", "hosts=%-7d edges=%-8d build=%.1f ms  snapshot=%.1f ms (%d B)  route %d sources=%.1f ms (%.1f ms/source)",
+                               graph.getVertexCount(), snapshot.getEdgeCount(), buildNanos / 1e6,
+                               snapshotNanos / 1e6, snapshot.memoryFootprint(), numSources,
+                               routeNanos / 1e6, routeNanos / (1e6 * numSources));
+    }
+
+    /**
+     *  Times point to point queries (bidirectional Dijkstra)
+     *  between random pairs of hosts, against building the
+     *  routing table of the source to answer the same query.
+     *  @param numNodes the number of hosts
+     */
+    static void benchQueries(int numNodes) {
+        Network graph = BenchmarkSupport.genSparseGraph(numNodes);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.reset(graph);
+        Random rand = new Random(5);
+        int queries = 1000;
+
+        for(int i = 0; i < queries; i++) {
+            alg.findPath(graph.getHost(rand.nextInt(numNodes)), graph.getHost(rand.nextInt(numNodes)));
+        }
+        long[] times = new long[queries];
+        long settled = 0;
+        long hops = 0;
+        for(int i = 0; i < queries; i++) {
+            Host source = graph.getHost(rand.nextInt(numNodes));
+            Host dest = graph.getHost(rand.nextInt(numNodes));
+            long t0 = System.nanoTime();
+            Path path = alg.findPath(source, dest);
+            times[i] = System.nanoTime() - t0;
+            settled += alg.getLastPathSettled();
+            if(path != null) hops += path.getHops().size() - 1;
+        }
+        Arrays.sort(times);
+        long total = 0;
+        for(long t : times) {
+            total += t;
+        }
+
+        //answering the query from the source's routing table
+        //means a full search from the source first
+        List<Host> one = new ArrayList<>();
+        long tableNanos = 0;
+        for(int i = 0; i < BenchmarkSupport.SAMPLED_SOURCES; i++) {
+            one.clear();
+            one.add(graph.getHost(rand.nextInt(numNodes)));
+            alg.start(one);
+            tableNanos += alg.getLastStartNanos();
+        }
+
+        BenchmarkSupport.print("query", "hosts=%-7d edges=%-8d avg=%.1f us  p50=%.1f us  p99=%.1f us  settled=%.0f  hops=%.1f  routing table=%.1f us",
+                               numNodes, graph.getEdgeCount(), total / (1e3 * queries),
+                               times[queries / 2] / 1e3, times[queries * 99 / 100] / 1e3,
+                               (double) settled / queries, (double) hops / queries,
+                               tableNanos / (1e3 * BenchmarkSupport.SAMPLED_SOURCES));
+    }
+
+    /**
+     *  Measures how much memory routing allocates: once for
+     *  computing every routing table and once for sending
+     *  messages between random pairs of hosts (per hop).
+     *  @param numNodes the number of hosts
+     */
+    static void benchAllocation(int numNodes) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.reset(graph);
+        for(int i = 0; i < BenchmarkSupport.WARMUP_RUNS; i++) {
+            alg.start();
+        }
+
+        long before = BenchmarkSupport.allocatedBytes();
+        alg.start();
+        long startBytes = BenchmarkSupport.allocatedBytes() - before;
+
+        long hops = 0;
+        long routeBytes = 0;
+        Random rand = new Random(2);
+        for(int i = 0; i < BenchmarkSupport.MESSAGES; i++) {
+            Host source = graph.getHost(rand.nextInt(numNodes));
+            Host dest = graph.getHost(rand.nextInt(numNodes));
+            if(!alg.step(source, dest)) continue;
+            before = BenchmarkSupport.allocatedBytes();
+            while(alg.step(dest)) {
+                hops++;
+            }
+            hops++;
+            routeBytes += BenchmarkSupport.allocatedBytes() - before;
+        }
+
+        BenchmarkSupport.print("alloc", "hosts=%-7d edges=%-8d start()=%d B (%.0f B/route)  routing=%.1f B/hop over %d hops",
+                               graph.getVertexCount(), graph.getEdgeCount(), startBytes,
+                               (double) startBytes / ((long) numNodes * numNodes),
+                               (double) routeBytes / hops, hops);
+    }
+
+    /**
+     *  Runs the benchmark.
+     *  @param args what to measure and the sizes to try
+     */
+    public static void main(String[] args) {
+        String mode = (args.length > 0) ? args[0] : "";
+        if(mode.equals("sampled")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 10000, 50000)) {
+                Network graph = BenchmarkSupport.genSparseGraph(n);
+                for(ThreeTenNetwork.Engine engine : ThreeTenNetwork.Engine.values()) {
+                    benchSources("sampled", "random", graph, engine);
+                }
+            }
+        }
+        else if(mode.equals("deep")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 2500, 10000)) {
+                benchSources("deep", "chain", BenchmarkSupport.genChain(n), ThreeTenNetwork.Engine.HEAP);
+                benchSources("deep", "grid", BenchmarkSupport.genGrid((int) Math.sqrt(n)), ThreeTenNetwork.Engine.HEAP);
+            }
+        }
+        else if(mode.equals("large")) {
+            benchLarge(BenchmarkSupport.intArg(args, 1, 1000000), BenchmarkSupport.intArg(args, 2, 10));
+        }
+        else if(mode.equals("query")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 10000, 100000)) {
+                benchQueries(n);
+            }
+        }
+        else if(mode.equals("alloc")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 100, 1000)) {
+                benchAllocation(n);
+            }
+        }
+        else {
+            for(int n : BenchmarkSupport.sizes(args, 0, 100, 1000)) {
+                benchStart(n);
+            }
+        }
+    }
+}
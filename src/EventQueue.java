@@ -0,0 +1,241 @@
+import java.util.Arrays;
+
+/**
+ *  The pending events of a discrete-event simulation, ordered
+ *  by simulated time. An event is just a time and two ints (what
+ *  they mean is up to the simulation), kept in parallel arrays of
+ *  a binary heap so scheduling an event allocates nothing once
+ *  the arrays are big enough. Events at the same time come out in
+ *  the order they were scheduled.
+ */
+public class EventQueue {
+    /**
+     *  The time of each event in heap order.
+     */
+    private long[] times;
+
+    /**
+     *  The order each event was scheduled in, to break ties.
+     */
+    private long[] order;
+
+    /**
+     *  The first int of each event.
+     */
+    private int[] firsts;
+
+    /**
+     *  The second int of each event.
+     */
+    private int[] seconds;
+
+    /**
+     *  The number of events in the queue.
+     */
+    private int size = 0;
+
+    /**
+     *  The number of events scheduled so far.
+     */
+    private long scheduled = 0;
+
+    /**
+     *  The time of the event last taken out of the queue.
+     */
+    private long lastTime = 0;
+
+    /**
+     *  The first int of the event last taken out of the queue.
+     */
+    private int lastFirst = 0;
+
+    /**
+     *  The second int of the event last taken out of the queue.
+     */
+    private int lastSecond = 0;
+
+    /**
+     *  Makes an empty queue.
+     *  @param capacity how many events to make room for at first
+     */
+    public EventQueue(int capacity) {
+        capacity = Math.max(capacity, 16);
+        times = new long[capacity];
+        order = new long[capacity];
+        firsts = new int[capacity];
+        seconds = new int[capacity];
+    }
+
+    /**
+     *  Returns the number of pending events.
+     *  @return the number of events
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Checks whether there are no pending events.
+     *  @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     *  Schedules an event.
+     *  @param time the simulated time of the event
+     *  @param first the first int of the event
+     *  @param second the second int of the event
+     */
+    public void schedule(long time, int first, int second) {
+        if(size == times.length) {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            order = Arrays.copyOf(order, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            seconds = Arrays.copyOf(seconds, capacity);
+        }
+        times[size] = time;
+        order[size] = scheduled++;
+        firsts[size] = first;
+        seconds[size] = second;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     *  Returns the time of the next event without removing it.
+     *  @return the time of the next event, or Long.MAX_VALUE if there are none
+     */
+    public long peekTime() {
+        return (size == 0) ? Long.MAX_VALUE : times[0];
+    }
+
+    /**
+     *  Takes the next event out of the queue. Its time and
+     *  ints can then be read with getTime(), getFirst() and
+     *  getSecond().
+     *  @return false if there were no events
+     */
+    public boolean poll() {
+        if(size == 0) return false;
+        lastTime = times[0];
+        lastFirst = firsts[0];
+        lastSecond = seconds[0];
+        size--;
+        if(size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        return true;
+    }
+
+    /**
+     *  Removes every pending event, keeping the arrays.
+     */
+    public void clear() {
+        size = 0;
+        scheduled = 0;
+        lastTime = 0;
+        lastFirst = 0;
+        lastSecond = 0;
+    }
+
+    /**
+     *  Returns the time of the event last taken out.
+     *  @return the simulated time
+     */
+    public long getTime() {
+        return lastTime;
+    }
+
+    /**
+     *  Returns the first int of the event last taken out.
+     *  @return the first int
+     */
+    public int getFirst() {
+        return lastFirst;
+    }
+
+    /**
+     *  Returns the second int of the event last taken out.
+     *  @return the second int
+     */
+    public int getSecond() {
+        return lastSecond;
+    }
+
+    /**
+     *  Checks whether the event at heap index i comes
+     *  before the event at heap index j.
+     *  @param i a heap index
+     *  @param j another heap index
+     *  @return true if the event at i is earlier
+     */
+    private boolean less(int i, int j) {
+        if(times[i] == times[j]) return order[i] < order[j];
+        return times[i] < times[j];
+    }
+
+    /**
+     *  Copies the event at one heap index to another.
+     *  @param from the index to copy from
+     *  @param to the index to copy to
+     */
+    private void move(int from, int to) {
+        times[to] = times[from];
+        order[to] = order[from];
+        firsts[to] = firsts[from];
+        seconds[to] = seconds[from];
+    }
+
+    /**
+     *  Swaps two events of the heap.
+     *  @param i a heap index
+     *  @param j another heap index
+     */
+    private void swap(int i, int j) {
+        long t = times[i];
+        times[i] = times[j];
+        times[j] = t;
+        long o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+        int f = firsts[i];
+        firsts[i] = firsts[j];
+        firsts[j] = f;
+        int s = seconds[i];
+        seconds[i] = seconds[j];
+        seconds[j] = s;
+    }
+
+    /**
+     *  Moves the event at heap index i up until its parent is earlier.
+     *  @param i the heap index
+     */
+    private void siftUp(int i) {
+        while(i > 0) {
+            int parent = (i - 1) / 2;
+            if(!less(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     *  Moves the event at heap index i down until both children are later.
+     *  @param i the heap index
+     */
+    private void siftDown(int i) {
+        while(true) {
+            int left = 2 * i + 1;
+            if(left >= size) break;
+            int earliest = left;
+            if(left + 1 < size && less(left + 1, left)) earliest = left + 1;
+            if(!less(earliest, i)) break;
+            swap(i, earliest);
+            i = earliest;
+        }
+    }
+}
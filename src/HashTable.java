@@ -7,7 +7,7 @@ import java.util.Collection;
  * @param <K> generic type key
  * @param <V> generic type value
  */ 
-public class HashTable<K,V> {
+public class HashTable<K,V> implements KeyValueTable<K,V> {
     /**
      * Minimum number of slots in the hash table.
      */
@@ -74,20 +74,33 @@ public class HashTable<K,V> {
         if (key == null || value == null) {
             return false;
         }
-        // Check if the storage contains the given key or not, if not return false.
-        boolean contain = contains(key);
-        if (contain == true) {
-            return false;
+        // Add the pair unless the key is already there (one walk of the chain), return false for a duplicate.
+        return putIfAbsent(key, value) == null;
+    }
+    
+    /**
+     * Add a key-value pair to the table unless the key is already in the table.
+     * Hashes the key and walks its chain once.
+     * If the load goes above 3 after adding an entry, this method should also rehash to three times the number of slots.
+     * @param key the key
+     * @param value the assiciated value
+     * @return the value already associated with the key, or null if the pair was added (or key or value is null)
+     */
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) {
+            return null;
+        }
+        V existing = storage.putIfAbsent(key, value);
+        if (existing != null) {
+            return existing;
         }
-        // Add a new pair to the storage by calling the method addPair in ALP class.
-        storage.addPair(key, value);
         // Increment the numEntries by 1 for each addition.
         numEntries++;
         // Check if the load goes above 3.0 or not, if yes rehash the storage by the current capacity * 3.
         if (getLoad() > 3.0) {
             rehash(capacity * 3);
         }
-        return true;
+        return null;
     }
     
     /**
@@ -97,9 +110,7 @@ public class HashTable<K,V> {
     public void rehash(int newSize) {
         // Check if the given newSize is less than the minimum slots or not, if yes use the minimum slots as the new size.
         if (newSize < MIN_SLOTS) {
-            storage = storage.resize(MIN_SLOTS);
-            this.capacity = MIN_SLOTS;
-            this.numEntries = numEntries;
+            newSize = MIN_SLOTS;
         }
         // Create a new storage with the new size and set it to the current storage.
         storage = storage.resize(newSize);
@@ -114,13 +125,8 @@ public class HashTable<K,V> {
      * @return true if successful, false otherwise
      */
     public boolean replace(K key, V value) {
-        // Check if the storage contains the given key or not, if not return false.
-        if (contains(key) == false) {
-            return false;
-        }
-        // If the storage contains the given key, remove the value by calling replaceValue() method in ALP class.
-        storage.replaceValue(key, value);    
-        return true;
+        // Replace the value if the key is found (one walk of the chain), otherwise return false.
+        return storage.replaceValue(key, value);
     }
     
     /**
@@ -129,17 +135,21 @@ public class HashTable<K,V> {
      * @return true if the removal is successful, false otherwise
      */
     public boolean remove(K key) {
-        // Check if the storage contains the key or not, if not return false.
-        if (contains(key) == false) {
-            return false;
-        }
-        // Get the index of the given key in the hash table.
-        int index = storage.getIndex(key);
-        // Remove the pair by calling the removePair() method in ALP class.
-        storage.removePair(index, key);
+        return removeAndGet(key) != null;
+    }
+    
+    /**
+     * Remove the key-value pair, hashing the key and walking its chain once.
+     * @param key the key
+     * @return the value that was associated with the key, or null if the key was not in the table
+     */
+    public V removeAndGet(K key) {
+        V old = storage.removeKey(key);
         // Decrement numEntries by 1 for each removal.
-        numEntries--;
-        return true;
+        if (old != null) {
+            numEntries--;
+        }
+        return old;
     }
     /**
      * Check the key requested is in the table.
@@ -155,11 +165,8 @@ public class HashTable<K,V> {
      * @return null if the given key is not in the table, otherwise return the associated value
      */
     public V get(K key) {
-        if (contains(key) == false) {
-            return null;
-        }
-        V value = storage.getValue(key);
-        return value;
+        // getValue() returns null when the key is not found, so the chain is only walked once.
+        return storage.getValue(key);
     }
     /**
      * Get a string representation of the given value.
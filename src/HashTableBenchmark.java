@@ -0,0 +1,284 @@
+import org.apache.commons.collections15.Factory;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *  A small timing harness comparing the chained HashTable
+ *  with ProbingHashTable on the operations routing uses.
+ *
+ *  <p>Usage: java HashTableBenchmark [entries...]
+ *  <br>or: java HashTableBenchmark load [entries]
+ */
+class HashTableBenchmark {
+    /**
+     *  A key that counts how many times it is hashed and
+     *  compared, to see how many probes each operation makes.
+     */
+    static class CountingKey {
+        /**
+         *  Total calls to hashCode() on any counting key.
+         */
+        static long hashes = 0;
+
+        /**
+         *  Total calls to equals() on any counting key.
+         */
+        static long compares = 0;
+
+        /**
+         *  The value of the key.
+         */
+        private final int value;
+
+        /**
+         *  Makes a key.
+         *  @param value the value of the key
+         */
+        CountingKey(int value) {
+            this.value = value;
+        }
+
+        /**
+         *  Counts the call and returns the value.
+         *  @return the hash code
+         */
+        @Override
+        public int hashCode() {
+            hashes++;
+            return value;
+        }
+
+        /**
+         *  Counts the call and compares values.
+         *  @param o the other object
+         *  @return whether the keys are equal
+         */
+        @Override
+        public boolean equals(Object o) {
+            compares++;
+            return (o instanceof CountingKey) && ((CountingKey) o).value == value;
+        }
+    }
+
+    /**
+     *  Counts the hashes and key comparisons each operation
+     *  makes on a chained HashTable with the given number
+     *  of entries (at its usual load).
+     *  @param n the number of entries
+     */
+    static void countProbes(int n) {
+        CountingKey[] keys = new CountingKey[n];
+        for(int i = 0; i < n; i++) {
+            keys[i] = new CountingKey(i * 7919);
+        }
+        HashTable<CountingKey,CountingKey> table = new HashTable<>(2);
+        String[] names = {"add", "get", "remove"};
+        for(int op = 0; op < 3; op++) {
+            CountingKey.hashes = 0;
+            CountingKey.compares = 0;
+            for(CountingKey k : keys) {
+                if(op == 0) table.add(k, k);
+                else if(op == 1) table.get(k);
+                else table.remove(k);
+            }
+            BenchmarkSupport.print("probes", "HashTable entries=%-8d %-6s hashes/op=%.2f  compares/op=%.2f",
+                                   n, names[op], (double) CountingKey.hashes / n, (double) CountingKey.compares / n);
+        }
+    }
+
+    /**
+     *  Makes a new empty table of one kind.
+     *  @param <K> the key type
+     *  @param <V> the value type
+     */
+    interface TableFactory<K,V> {
+        /**
+         *  Makes a new table.
+         *  @return the table
+         */
+        KeyValueTable<K,V> create();
+    }
+
+    /**
+     *  Times add, get, contains (with misses) and remove
+     *  on a table, printing the average ns per operation.
+     *  @param <K> the key type
+     *  @param name the name to print for the table
+     *  @param factory makes empty tables
+     *  @param keys the keys to add
+     *  @param missing keys that are never added
+     *  @param report whether to print the result (false for a warm-up pass)
+     */
+    static <K> void bench(String name, TableFactory<K,K> factory, K[] keys, K[] missing, boolean report) {
+        long[] totals = new long[4];
+        for(int run = 0; run < BenchmarkSupport.WARMUP_RUNS + BenchmarkSupport.TIMED_RUNS; run++) {
+            KeyValueTable<K,K> table = factory.create();
+            long[] times = new long[4];
+
+            long t0 = System.nanoTime();
+            for(K k : keys) {
+                table.add(k, k);
+            }
+            times[0] = System.nanoTime() - t0;
+
+            t0 = System.nanoTime();
+            for(K k : keys) {
+                if(table.get(k) != null) BenchmarkSupport.sink++;
+            }
+            times[1] = System.nanoTime() - t0;
+
+            t0 = System.nanoTime();
+            for(K k : missing) {
+                if(table.contains(k)) BenchmarkSupport.sink++;
+            }
+            times[2] = System.nanoTime() - t0;
+
+            t0 = System.nanoTime();
+            for(K k : keys) {
+                table.remove(k);
+            }
+            times[3] = System.nanoTime() - t0;
+
+            if(run >= BenchmarkSupport.WARMUP_RUNS) {
+                for(int i = 0; i < 4; i++) {
+                    totals[i] += times[i];
+                }
+            }
+        }
+        if(!report) return;
+        double ops = (double) keys.length * BenchmarkSupport.TIMED_RUNS;
+        BenchmarkSupport.print("table", "%-16s entries=%-8d add=%7.1f  get=%7.1f  contains(miss)=%7.1f  remove=%7.1f ns/op",
+                               name, keys.length, totals[0] / ops, totals[1] / ops, totals[2] / ops, totals[3] / ops);
+    }
+
+    /**
+     *  Runs both tables with the given keys.
+     *  @param <K> the key type
+     *  @param keyType the name of the key type to print
+     *  @param keys the keys to add
+     *  @param missing keys that are never added
+     *  @param report whether to print the results (false for a warm-up pass)
+     */
+    static <K> void benchBoth(String keyType, K[] keys, K[] missing, boolean report) {
+        bench("HashTable<" + keyType + ">", new TableFactory<K,K>() {
+            public KeyValueTable<K,K> create() {
+                return new HashTable<K,K>(2);
+            }
+        }, keys, missing, report);
+        bench("Probing<" + keyType + ">", new TableFactory<K,K>() {
+            public KeyValueTable<K,K> create() {
+                return new ProbingHashTable<K,K>(2);
+            }
+        }, keys, missing, report);
+    }
+
+    /**
+     *  Times add, get and remove on a chained HashTable held at
+     *  a fixed load. The table is made with as many slots as the
+     *  load needs, so adding every key ends at that load without
+     *  rehashing, and gets and removes see it at that load.
+     *  @param keys the keys to add
+     *  @param load the load factor
+     */
+    static void benchLoad(Integer[] keys, double load) {
+        int slots = Math.max(2, (int) Math.ceil(keys.length / load));
+        long[] totals = new long[3];
+        for(int run = 0; run < BenchmarkSupport.WARMUP_RUNS + BenchmarkSupport.TIMED_RUNS; run++) {
+            HashTable<Integer,Integer> table = new HashTable<>(slots);
+            long[] times = new long[3];
+
+            long t0 = System.nanoTime();
+            for(Integer k : keys) {
+                if(table.add(k, k)) BenchmarkSupport.sink++;
+            }
+            times[0] = System.nanoTime() - t0;
+
+            t0 = System.nanoTime();
+            for(Integer k : keys) {
+                BenchmarkSupport.sink += table.get(k);
+            }
+            times[1] = System.nanoTime() - t0;
+
+            t0 = System.nanoTime();
+            for(Integer k : keys) {
+                if(table.remove(k)) BenchmarkSupport.sink++;
+            }
+            times[2] = System.nanoTime() - t0;
+
+            if(run >= BenchmarkSupport.WARMUP_RUNS) {
+                for(int i = 0; i < 3; i++) {
+                    totals[i] += times[i];
+                }
+            }
+        }
+        double ops = (double) keys.length * BenchmarkSupport.TIMED_RUNS;
+        BenchmarkSupport.print("load", "HashTable entries=%-8d load=%-4.1f add=%7.1f  get=%7.1f  remove=%7.1f ns/op",
+                               keys.length, load, totals[0] / ops, totals[1] / ops, totals[2] / ops);
+    }
+
+    /**
+     *  Times resizing the lists behind a hash table at a load
+     *  of 3 to three times as many lists (what HashTable does
+     *  when it grows), per entry moved.
+     *  @param keys the keys in the lists
+     */
+    static void benchResize(Integer[] keys) {
+        ArrayOfListsOfPairs<Integer,Integer> lists = new ArrayOfListsOfPairs<>(Math.max(1, keys.length / 3));
+        for(Integer k : keys) {
+            lists.addPair(k, k);
+        }
+        long total = 0;
+        for(int run = 0; run < BenchmarkSupport.WARMUP_RUNS + BenchmarkSupport.TIMED_RUNS; run++) {
+            long t0 = System.nanoTime();
+            BenchmarkSupport.sink += lists.resize(keys.length).getNumLists();
+            if(run >= BenchmarkSupport.WARMUP_RUNS) total += System.nanoTime() - t0;
+        }
+        BenchmarkSupport.print("resize", "ArrayOfListsOfPairs entries=%-8d %7.1f ns/entry",
+                               keys.length, (double) total / ((long) keys.length * BenchmarkSupport.TIMED_RUNS));
+    }
+
+    /**
+     *  Runs the benchmark.
+     *  @param args the numbers of entries to try, or "load" and the number of entries
+     */
+    public static void main(String[] args) {
+        if(args.length > 0 && args[0].equals("load")) {
+            int n = BenchmarkSupport.intArg(args, 1, 100000);
+            Integer[] keys = new Integer[n];
+            Random rand = new Random(3);
+            for(int i = 0; i < n; i++) {
+                keys[i] = rand.nextInt();
+            }
+            for(double load : new double[] {0.5, 1.0, 2.0, 3.0}) {
+                benchLoad(keys, load);
+            }
+            benchResize(Arrays.copyOf(keys, Math.max(1, n / 10)));
+            benchResize(keys);
+            return;
+        }
+        for(int n : BenchmarkSupport.sizes(args, 0, 1000, 20000)) {
+            countProbes(n);
+            Factory<Host> hostFactory = new SimulationContext().getHostFactory();
+            Host[] hosts = new Host[n];
+            Host[] otherHosts = new Host[n];
+            Integer[] ints = new Integer[n];
+            Integer[] otherInts = new Integer[n];
+            for(int i = 0; i < n; i++) {
+                hosts[i] = hostFactory.create();
+                ints[i] = i;
+                otherInts[i] = n + i;
+            }
+            for(int i = 0; i < n; i++) {
+                otherHosts[i] = hostFactory.create();
+            }
+            //bench() is shared by every table and key type, so its
+            //calls only settle once the JIT has seen all of them; run
+            //each once first so the first one timed isn't favored
+            benchBoth("Integer", ints, otherInts, false);
+            benchBoth("Host", hosts, otherHosts, false);
+            benchBoth("Integer", ints, otherInts, true);
+            benchBoth("Host", hosts, otherHosts, true);
+        }
+    }
+}
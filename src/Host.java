@@ -1,24 +1,19 @@
-import org.apache.commons.collections15.Factory;
 import java.awt.Color;
 
 /**
  *  A host in the network.
  */
 public class Host {
-    /**
-     *  The last id given to a node.
-     */
-    public static int LAST_ID = -1;
-    
     /**
      *  The unique id of this node.
      */
     private final int id;
     
     /**
-     *  The color of this node in the visualization.
+     *  The color of this node in the visualization, or null
+     *  for the default color (so making a host doesn't load AWT).
      */
-    private Color other = ThreeTenNetwork.COLOR_DEFAULT_NODE;
+    private Color other = null;
     
     /**
      *  The routing table that this node is aware of.
@@ -26,25 +21,15 @@ public class Host {
     private RoutingTable routes = new RoutingTable();
     
     /**
-     *  Sets the id of the host.
-     */
-    private Host() {
-        id = ++LAST_ID;
-    }
-    
-    /**
-     *  Creates a host with a given ID, but
-     *  only if that host has previously been
-     *  generated previously with the standard
-     *  constructor. (This is to allow making
-     *  host objects that are equal to each other,
-     *  but not hosts with id numbers out of
-     *  sequence.)
+     *  Creates a host with a given ID. New hosts
+     *  get their ids from a SimulationContext;
+     *  this also makes host objects that are equal
+     *  to one made earlier.
      *  @param id the unique identifier of the node
      */
     public Host(int id) {
-        if(id < 0 || id > LAST_ID) {
-            throw new IllegalArgumentException("Cannot create a node with an arbitrary id.");
+        if(id < 0) {
+            throw new IllegalArgumentException("Cannot create a node with a negative id.");
         }
         this.id = id;
     }
@@ -62,7 +47,7 @@ public class Host {
      *  @return the host's current color
      */
     public Color getColor() {
-        return other;
+        return (other == null) ? ThreeTenNetwork.Colors.DEFAULT_NODE : other;
     }
     
     /**
@@ -74,14 +59,15 @@ public class Host {
     }
     
     /**
-     *  Sets the hashcode of the host
-     *  to be a hash of the string value
-     *  which contains the id.
+     *  The hash code of the host is its id. Ids
+     *  are unique, so this never collides and
+     *  (unlike hashing the address string) it
+     *  doesn't allocate anything.
      *  @return the hash code of the host
      */
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return id;
     }
     
     /**
@@ -90,7 +76,56 @@ public class Host {
      *  @return the string representation of the host
      */
     public String toString() {
-        return "192.168.1."+id;
+        return addressOf(id);
+    }
+    
+    /**
+     *  Works out the IPv4 address of the host with a
+     *  given id. The first 256 hosts are on 192.168.1.x
+     *  and larger networks continue in 10.0.0.0/8 (and
+     *  the /8s after it past 16 million hosts).
+     *  @param id the id of the host
+     *  @return the address of the host
+     */
+    public static String addressOf(int id) {
+        if(id < 256) {
+            return "192.168.1."+id;
+        }
+        return (10 + (id >>> 24)) + "." + ((id >>> 16) & 255) + "." + ((id >>> 8) & 255) + "." + (id & 255);
+    }
+    
+    /**
+     *  Works out the id of the host with a given IPv4
+     *  address, the opposite of addressOf().
+     *  @param address the address of the host
+     *  @return the id of the host
+     *  @throws IllegalArgumentException if the address isn't one addressOf() gives out
+     */
+    public static int idOf(String address) {
+        String[] parts = address.trim().split("\\.");
+        if(parts.length != 4) {
+            throw new IllegalArgumentException("Not a host address: " + address);
+        }
+        int[] octets = new int[4];
+        try {
+            for(int i = 0; i < 4; i++) {
+                octets[i] = Integer.parseInt(parts[i]);
+                if(octets[i] < 0 || octets[i] > 255) {
+                    throw new IllegalArgumentException("Not a host address: " + address);
+                }
+            }
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Not a host address: " + address, e);
+        }
+        if(octets[0] == 192 && octets[1] == 168 && octets[2] == 1) {
+            return octets[3];
+        }
+        int id = ((octets[0] - 10) << 24) | (octets[1] << 16) | (octets[2] << 8) | octets[3];
+        if(octets[0] < 10 || octets[0] > 137 || id < 256) {
+            throw new IllegalArgumentException("Not a host address: " + address);
+        }
+        return id;
     }
     
     /**
@@ -112,17 +147,4 @@ public class Host {
         }
         return false;
     }
-    
-    /**
-     *  This is a code pattern called a "factory".
-     *  A factory for hosts makes instances of hosts!
-     *  @return a factory that can make hosts
-     */
-    public static Factory<Host> getFactory() { 
-        return new Factory<Host> () {
-            public Host create() {
-                return new Host();
-            }
-        };
-    }
 }
@@ -0,0 +1,157 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ *  Reads CSV lines that name two hosts of a network and a number,
+ *  "source,dest,value", like the connection lists Network reads
+ *  and the traffic matrices TrafficMatrix reads. A host is its id
+ *  or its address. Blank lines, lines starting with # and a header
+ *  line starting with "source" are skipped. The number is checked
+ *  as each line is read, and errors say which line they are on.
+ */
+public class HostPairReader {
+    /**
+     *  Where the lines come from.
+     */
+    private final BufferedReader reader;
+
+    /**
+     *  The network the hosts must be in.
+     */
+    private final Network graph;
+
+    /**
+     *  What the third column is called, for error messages.
+     */
+    private final String valueName;
+
+    /**
+     *  Whether a line may leave out the third column.
+     */
+    private final boolean valueOptional;
+
+    /**
+     *  The smallest value a line may have.
+     */
+    private final int minValue;
+
+    /**
+     *  The number of lines read so far.
+     */
+    private int lineNumber = 0;
+
+    /**
+     *  The source host id on the last line read.
+     */
+    private int source = 0;
+
+    /**
+     *  The destination host id on the last line read.
+     */
+    private int dest = 0;
+
+    /**
+     *  The value on the last line read.
+     */
+    private int value = 0;
+
+    /**
+     *  Makes a reader.
+     *  @param graph the network the hosts must be in
+     *  @param in where to read the CSV from
+     *  @param valueName what the third column is called
+     *  @param valueOptional whether the third column may be left out (it is then 1)
+     *  @param minValue the smallest value a line may have
+     */
+    public HostPairReader(Network graph, Reader in, String valueName, boolean valueOptional, int minValue) {
+        this.reader = new BufferedReader(in);
+        this.graph = graph;
+        this.valueName = valueName;
+        this.valueOptional = valueOptional;
+        this.minValue = minValue;
+    }
+
+    /**
+     *  Reads the next line with hosts on it.
+     *  @return false if there are no more lines
+     *  @throws IOException if reading fails
+     *  @throws IllegalArgumentException if the line can't be understood,
+     *      names a host that isn't in the network or has a value that
+     *      is too small
+     */
+    public boolean next() throws IOException {
+        String line;
+        while((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#") || line.toLowerCase().startsWith("source")) continue;
+            String[] fields = line.split(",");
+            if(fields.length < (valueOptional ? 2 : 3) || fields.length > 3) {
+                String format = valueOptional ? "source,dest[," + valueName + "]" : "source,dest," + valueName;
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected " + format);
+            }
+            try {
+                source = parseHost(fields[0]);
+                dest = parseHost(fields[1]);
+                value = (fields.length == 3) ? Integer.parseInt(fields[2].trim()) : 1;
+            }
+            catch(IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            if(value < minValue) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": The " + valueName
+                                                   + " must be at least " + minValue + ", not " + value + ".");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     *  Works out the id of a host named by its id or address.
+     *  @param field the id or address
+     *  @return the host id
+     *  @throws IllegalArgumentException if there is no such host in the network
+     */
+    private int parseHost(String field) {
+        field = field.trim();
+        int id = (field.indexOf('.') >= 0) ? Host.idOf(field) : Integer.parseInt(field);
+        if(graph.getHost(id) == null) {
+            throw new IllegalArgumentException("No host " + field + " in the network.");
+        }
+        return id;
+    }
+
+    /**
+     *  Returns the source host id on the last line read.
+     *  @return the host id
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     *  Returns the destination host id on the last line read.
+     *  @return the host id
+     */
+    public int getDest() {
+        return dest;
+    }
+
+    /**
+     *  Returns the value on the last line read.
+     *  @return the value, 1 if it was left out
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     *  Returns the number of the last line read.
+     *  @return the line number, starting at 1
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Times the ways of not computing every route again: repairing
+ *  the routes when links flap (incremental mode), and computing
+ *  routing tables only when they are first used (lazy mode).
+ *
+ *  <p>Usage: java IncrementalBenchmark [hosts...]
+ *  <br>or: java IncrementalBenchmark lazy [hosts...]
+ */
+class IncrementalBenchmark {
+    /**
+     *  Times repairing the routes when single links flap (are
+     *  removed and added back) against recomputing every route.
+     *  @param numNodes the number of hosts
+     */
+    static void benchFlaps(int numNodes) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setIncremental(true);
+        alg.reset(graph);
+        for(int i = 0; i <= BenchmarkSupport.WARMUP_RUNS; i++) {
+            alg.start();
+        }
+        long fullNanos = alg.getLastStartNanos();
+
+        List<Connection> edges = new ArrayList<>(graph.getEdges());
+        Random rand = new Random(3);
+        int flaps = 50;
+        long touched = 0;
+        long t0 = System.nanoTime();
+        for(int i = 0; i < flaps; i++) {
+            Connection c = edges.get(rand.nextInt(edges.size()));
+            Host from = graph.getSource(c);
+            Host to = graph.getDest(c);
+            graph.removeEdge(c);
+            touched += alg.getLastTouchedSources();
+            graph.addEdge(c, from, to);
+            touched += alg.getLastTouchedSources();
+        }
+        long repairNanos = System.nanoTime() - t0;
+
+        BenchmarkSupport.print("flap", "hosts=%-7d edges=%-8d full start()=%.1f ms  repair=%.2f ms/change  sources touched=%.1f/change (of %d)",
+                               graph.getVertexCount(), graph.getEdgeCount(), fullNanos / 1e6,
+                               repairNanos / (1e6 * 2 * flaps), touched / (2.0 * flaps), numNodes);
+    }
+
+    /**
+     *  Compares computing every routing table up front with
+     *  computing them on first use. Routing from every host of
+     *  a big network takes too long, so the up front cost is
+     *  worked out from a few sampled sources.
+     *  @param numNodes the number of hosts
+     */
+    static void benchLazy(int numNodes) {
+        Network graph = BenchmarkSupport.genSparseGraph(numNodes);
+        Random rand = new Random(4);
+        List<Host> sources = new ArrayList<>();
+        for(int i = 0; i < BenchmarkSupport.SAMPLED_SOURCES; i++) {
+            sources.add(graph.getHost(rand.nextInt(numNodes)));
+        }
+
+        ThreeTenNetwork eager = new ThreeTenNetwork();
+        eager.reset(graph);
+        eager.start(sources);
+        eager.start(sources);
+        double eagerNanos = (double) eager.getLastStartNanos() / BenchmarkSupport.SAMPLED_SOURCES * numNodes;
+
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setLazy(true);
+        alg.reset(graph);
+        alg.start();
+        long startNanos = alg.getLastStartNanos();
+
+        //the first message computes the table of every host on its
+        //path, sending it again only uses the cached tables
+        Host source = graph.getHost(rand.nextInt(numNodes));
+        Host dest = graph.getHost(rand.nextInt(numNodes));
+        long firstNanos = BenchmarkSupport.timeMessage(alg, source, dest);
+        long secondNanos = BenchmarkSupport.timeMessage(alg, source, dest);
+
+        BenchmarkSupport.print("lazy", "hosts=%-7d edges=%-8d eager start()=%.1f s (estimated)  lazy start()=%.1f ms  first message=%.1f ms  again=%.3f ms",
+                               graph.getVertexCount(), graph.getEdgeCount(), eagerNanos / 1e9,
+                               startNanos / 1e6, firstNanos / 1e6, secondNanos / 1e6);
+    }
+
+    /**
+     *  Runs the benchmark.
+     *  @param args what to measure and the sizes to try
+     */
+    public static void main(String[] args) {
+        String mode = (args.length > 0) ? args[0] : "";
+        if(mode.equals("lazy")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 50000)) {
+                benchLazy(n);
+            }
+        }
+        else {
+            for(int n : BenchmarkSupport.sizes(args, 0, 100, 1000)) {
+                benchFlaps(n);
+            }
+        }
+    }
+}
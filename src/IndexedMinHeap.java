@@ -0,0 +1,202 @@
+/**
+ *  A binary min-heap of integer ids (such as host ids), each
+ *  with an integer key. Unlike java.util.PriorityQueue, the heap
+ *  remembers where every id is stored, so lowering the key of an
+ *  id already in the heap is O(log n) instead of a linear
+ *  remove followed by an add.
+ *
+ *  <p>Ids are compared by key first and ties are broken by the
+ *  smaller id, the same ordering DijkstraNode uses.
+ */
+public class IndexedMinHeap implements ShortestPathQueue {
+    /**
+     *  The ids in heap order.
+     */
+    private int[] heap;
+
+    /**
+     *  The position of each id in the heap, or -1 if
+     *  the id is not in the heap.
+     */
+    private int[] pos;
+
+    /**
+     *  The key of each id.
+     */
+    private int[] keys;
+
+    /**
+     *  The number of ids in the heap.
+     */
+    private int size = 0;
+
+    /**
+     *  Creates an empty heap that can hold the ids 0 to capacity-1.
+     *  @param capacity one more than the largest id that will be stored
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        keys = new int[capacity];
+        java.util.Arrays.fill(pos, -1);
+    }
+
+    /**
+     *  Returns the number of ids in the heap.
+     *  @return the number of ids in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Checks whether the heap is empty.
+     *  @return true if there are no ids in the heap
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     *  Checks whether an id is in the heap.
+     *  @param id the id
+     *  @return true if the id is in the heap
+     */
+    public boolean contains(int id) {
+        return pos[id] != -1;
+    }
+
+    /**
+     *  Returns the current key of an id in the heap.
+     *  @param id the id
+     *  @return the id's key
+     */
+    public int getKey(int id) {
+        return keys[id];
+    }
+
+    /**
+     *  Adds an id to the heap.
+     *  @param id the id to add
+     *  @param key the key of the id
+     *  @throws IllegalArgumentException if the id is already in the heap
+     */
+    public void add(int id, int key) {
+        if(pos[id] != -1) {
+            throw new IllegalArgumentException("Id " + id + " is already in the heap.");
+        }
+        keys[id] = key;
+        heap[size] = id;
+        pos[id] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     *  Lowers the key of an id that is already in the heap.
+     *  @param id the id
+     *  @param key the new key, which may not be larger than the current one
+     *  @throws IllegalArgumentException if the id is not in the heap or
+     *      the new key is larger than the current key
+     */
+    public void decreaseKey(int id, int key) {
+        if(pos[id] == -1 || key > keys[id]) {
+            throw new IllegalArgumentException("Cannot decrease the key of id " + id + ".");
+        }
+        keys[id] = key;
+        siftUp(pos[id]);
+    }
+
+    /**
+     *  Returns the id with the smallest key without removing it.
+     *  @return the id with the smallest key, or -1 if the heap is empty
+     */
+    public int peek() {
+        return (size == 0) ? -1 : heap[0];
+    }
+
+    /**
+     *  Removes and returns the id with the smallest key.
+     *  @return the id with the smallest key, or -1 if the heap is empty
+     */
+    public int poll() {
+        if(size == 0) return -1;
+
+        int min = heap[0];
+        size--;
+        if(size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+        pos[min] = -1;
+        return min;
+    }
+
+    /**
+     *  Removes every id from the heap. This only touches the
+     *  ids still in the heap, so a heap can be reused cheaply.
+     */
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     *  Checks whether the id at heap index i comes before
+     *  the id at heap index j.
+     *  @param i a heap index
+     *  @param j another heap index
+     *  @return true if the id at i has the smaller key (or the same key and a smaller id)
+     */
+    private boolean less(int i, int j) {
+        int a = heap[i];
+        int b = heap[j];
+        if(keys[a] == keys[b]) return a < b;
+        return keys[a] < keys[b];
+    }
+
+    /**
+     *  Swaps two entries of the heap and updates their positions.
+     *  @param i a heap index
+     *  @param j another heap index
+     */
+    private void swap(int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+        pos[heap[i]] = i;
+        pos[heap[j]] = j;
+    }
+
+    /**
+     *  Moves the entry at heap index i up until its parent is smaller.
+     *  @param i the heap index
+     */
+    private void siftUp(int i) {
+        while(i > 0) {
+            int parent = (i - 1) / 2;
+            if(!less(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     *  Moves the entry at heap index i down until both children are larger.
+     *  @param i the heap index
+     */
+    private void siftDown(int i) {
+        while(true) {
+            int left = 2 * i + 1;
+            if(left >= size) break;
+            int smallest = left;
+            if(left + 1 < size && less(left + 1, left)) smallest = left + 1;
+            if(!less(smallest, i)) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ *  The operations a hash table from keys to values offers, so
+ *  code can use either the chained HashTable or the open
+ *  addressing ProbingHashTable. Keys and values may not be null.
+ *  @param <K> generic type key
+ *  @param <V> generic type value
+ */
+public interface KeyValueTable<K,V> {
+    /**
+     *  The number of key-value entries in the table.
+     *  @return the number of key-value entries in the table
+     */
+    int size();
+
+    /**
+     *  Get the number of slots in the table.
+     *  @return the number of slots in the table
+     */
+    int getNumSlots();
+
+    /**
+     *  Get the load on the table.
+     *  @return the number of entries divided by the number of slots
+     */
+    double getLoad();
+
+    /**
+     *  Add a key-value pair to the table.
+     *  @param key the key
+     *  @param value the associated value
+     *  @return true if the pair was added, false if the key was already
+     *      in the table or the key or value is null
+     */
+    boolean add(K key, V value);
+
+    /**
+     *  Add a key-value pair to the table unless the key is already in the table.
+     *  @param key the key
+     *  @param value the associated value
+     *  @return the value already associated with the key, or null if the
+     *      pair was added (or the key or value is null)
+     */
+    V putIfAbsent(K key, V value);
+
+    /**
+     *  Rehashes the table to the given new size.
+     *  @param newSize the given new size
+     */
+    void rehash(int newSize);
+
+    /**
+     *  Replace the value of the given key.
+     *  @param key the key
+     *  @param value the value
+     *  @return true if the key was found, false otherwise
+     */
+    boolean replace(K key, V value);
+
+    /**
+     *  Remove the key-value pair.
+     *  @param key the key
+     *  @return true if the removal is successful, false otherwise
+     */
+    boolean remove(K key);
+
+    /**
+     *  Remove the key-value pair.
+     *  @param key the key
+     *  @return the value that was associated with the key, or null if the key was not in the table
+     */
+    V removeAndGet(K key);
+
+    /**
+     *  Check the key requested is in the table.
+     *  @param key the requested key
+     *  @return true if the key requested is in the table, false otherwise
+     */
+    boolean contains(K key);
+
+    /**
+     *  Get the associated value of the given key.
+     *  @param key the key
+     *  @return the associated value, or null if the key is not in the table
+     */
+    V get(K key);
+
+    /**
+     *  Get the entries in the chained form HashTable uses internally.
+     *  @return the entries as an array of lists of pairs
+     */
+    ArrayOfListsOfPairs<K,V> getInternalTable();
+}
@@ -0,0 +1,315 @@
+import java.util.Arrays;
+
+/**
+ *  The bounded FIFO queue of packets waiting to be sent across
+ *  a connection, with the statistics the simulator collects for
+ *  it. Packets are stored as ids in a ring buffer that never
+ *  grows, and the queue depth is counted in a histogram, so
+ *  using the queue allocates nothing.
+ */
+public class LinkQueue {
+    /**
+     *  The packet ids, in a ring starting at head.
+     */
+    private final int[] packets;
+
+    /**
+     *  The position of the packet at the front of the queue.
+     */
+    private int head = 0;
+
+    /**
+     *  The number of packets in the queue.
+     */
+    private int size = 0;
+
+    /**
+     *  How many times each queue depth was seen by an arriving
+     *  packet (index 0 to the queue limit).
+     */
+    private final long[] depthCounts;
+
+    /**
+     *  The average queue depth (a moving average), used
+     *  by random early detection.
+     */
+    private double averageDepth = 0;
+
+    /**
+     *  The simulated time the queue last became empty.
+     */
+    private long idleSince = 0;
+
+    /**
+     *  The number of packets that arrived at the queue.
+     */
+    private long arrived = 0;
+
+    /**
+     *  The number of packets dropped.
+     */
+    private long dropped = 0;
+
+    /**
+     *  The number of packets sent across the connection.
+     */
+    private long sent = 0;
+
+    /**
+     *  Whether the simulator has already planned to send
+     *  from this queue.
+     */
+    private boolean serviceScheduled = false;
+
+    /**
+     *  Makes an empty queue.
+     *  @param limit the most packets the queue can hold
+     *  @throws IllegalArgumentException if the limit is less than 1
+     */
+    public LinkQueue(int limit) {
+        if(limit < 1) {
+            throw new IllegalArgumentException("A queue must hold at least one packet.");
+        }
+        packets = new int[limit];
+        depthCounts = new long[limit + 1];
+    }
+
+    /**
+     *  Returns the most packets the queue can hold.
+     *  @return the queue limit
+     */
+    public int getLimit() {
+        return packets.length;
+    }
+
+    /**
+     *  Returns the number of packets waiting.
+     *  @return the queue depth
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Checks whether no packets are waiting.
+     *  @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     *  Checks whether the queue can't take another packet.
+     *  @return true if the queue is full
+     */
+    public boolean isFull() {
+        return size == packets.length;
+    }
+
+    /**
+     *  Records a packet arriving at the queue (before the drop
+     *  policy decides whether to keep it).
+     */
+    public void recordArrival() {
+        arrived++;
+        depthCounts[size]++;
+    }
+
+    /**
+     *  Records a packet being dropped.
+     */
+    public void recordDrop() {
+        dropped++;
+    }
+
+    /**
+     *  Adds a packet to the back of the queue.
+     *  @param packet the packet id
+     *  @throws IllegalStateException if the queue is full
+     */
+    public void add(int packet) {
+        if(isFull()) {
+            throw new IllegalStateException("The queue is full.");
+        }
+        int tail = head + size;
+        if(tail >= packets.length) tail -= packets.length;
+        packets[tail] = packet;
+        size++;
+    }
+
+    /**
+     *  Removes the packet at the front of the queue and
+     *  counts it as sent.
+     *  @return the packet id
+     *  @throws IllegalStateException if the queue is empty
+     */
+    public int poll() {
+        if(size == 0) {
+            throw new IllegalStateException("The queue is empty.");
+        }
+        int packet = packets[head];
+        head++;
+        if(head == packets.length) head = 0;
+        size--;
+        sent++;
+        return packet;
+    }
+
+    /**
+     *  Counts a packet that was sent without waiting in the queue.
+     */
+    public void recordSent() {
+        sent++;
+    }
+
+    /**
+     *  Moves the average depth towards the current depth.
+     *  @param weight how much the current depth counts (between 0 and 1)
+     *  @return the new average depth
+     */
+    public double updateAverageDepth(double weight) {
+        averageDepth = (1 - weight) * averageDepth + weight * size;
+        return averageDepth;
+    }
+
+    /**
+     *  Decays the average depth for a time the queue sat empty,
+     *  as if the given number of empty depths had been seen.
+     *  @param weight how much each depth counts (between 0 and 1)
+     *  @param slots how many packets could have been sent while the queue was empty
+     *  @return the new average depth
+     */
+    public double decayAverageDepth(double weight, long slots) {
+        if(slots > 0) {
+            averageDepth *= Math.pow(1 - weight, slots);
+        }
+        return averageDepth;
+    }
+
+    /**
+     *  Returns the average depth last worked out.
+     *  @return the average depth
+     */
+    public double getAverageDepth() {
+        return averageDepth;
+    }
+
+    /**
+     *  Returns whether sending from this queue is already planned.
+     *  @return true if a send is scheduled
+     */
+    public boolean isServiceScheduled() {
+        return serviceScheduled;
+    }
+
+    /**
+     *  Sets whether sending from this queue is planned.
+     *  @param serviceScheduled true if a send is scheduled
+     */
+    public void setServiceScheduled(boolean serviceScheduled) {
+        this.serviceScheduled = serviceScheduled;
+    }
+
+    /**
+     *  Returns the simulated time the queue last became empty.
+     *  @return the time
+     */
+    public long getIdleSince() {
+        return idleSince;
+    }
+
+    /**
+     *  Sets the simulated time the queue last became empty.
+     *  @param idleSince the time
+     */
+    public void setIdleSince(long idleSince) {
+        this.idleSince = idleSince;
+    }
+
+    /**
+     *  Returns the number of packets that arrived.
+     *  @return the number of arrivals
+     */
+    public long getArrived() {
+        return arrived;
+    }
+
+    /**
+     *  Returns the number of packets dropped.
+     *  @return the number of drops
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     *  Returns the number of packets sent.
+     *  @return the number of packets sent
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     *  Returns how many times an arriving packet found the
+     *  queue at each depth. The array is shared, don't change it.
+     *  @return the counts, indexed by depth
+     */
+    public long[] getDepthCounts() {
+        return depthCounts;
+    }
+
+    /**
+     *  Returns the queue depth that the given fraction of
+     *  arriving packets found the queue at or below.
+     *  @param fraction the percentile as a fraction (0.5 for the median)
+     *  @return the depth, or 0 if no packets arrived
+     */
+    public int getDepthPercentile(double fraction) {
+        return percentile(depthCounts, fraction);
+    }
+
+    /**
+     *  Finds a percentile in a histogram.
+     *  @param counts how many times each value was seen, indexed by value
+     *  @param fraction the percentile as a fraction (0.5 for the median)
+     *  @return the value, or 0 if nothing was counted
+     */
+    public static int percentile(long[] counts, double fraction) {
+        long total = 0;
+        for(long c : counts) {
+            total += c;
+        }
+        if(total == 0) return 0;
+        long target = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for(int value = 0; value < counts.length; value++) {
+            seen += counts[value];
+            if(seen >= Math.max(target, 1)) return value;
+        }
+        return counts.length - 1;
+    }
+
+    /**
+     *  Empties the queue and forgets the statistics.
+     */
+    public void reset() {
+        head = 0;
+        size = 0;
+        averageDepth = 0;
+        idleSince = 0;
+        arrived = 0;
+        dropped = 0;
+        sent = 0;
+        serviceScheduled = false;
+        Arrays.fill(depthCounts, 0);
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "LinkQueue[depth=" + size + "/" + packets.length + ", sent=" + sent + ", dropped=" + dropped + "]";
+    }
+}
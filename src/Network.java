@@ -5,6 +5,8 @@ import edu.uci.ics.jung.graph.util.Pair;
 import edu.uci.ics.jung.graph.util.EdgeType;
 
 import org.apache.commons.collections15.Factory;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 /**
  * Network class represents a directed graph formed by connecting hosts with connections 
@@ -13,54 +15,431 @@ import java.util.*;
  */ 
 public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Connection> {
     /**
-     * Maximum size of network.
+     * Initial number of host slots, the storage grows past this as hosts are added.
      */
-    private static final int MAX_NETWORK_SIZE = 255;
+    private static final int INITIAL_NETWORK_SIZE = 255;
     /**
      * Adjacency list of the network.
      */
     private ArrayOfListsOfPairs<Host,Connection> storage;
+    /**
+     * Reverse adjacency list of the network: the list at a host's id holds
+     * (source, edge) pairs for every edge coming into that host.
+     */
+    private ArrayOfListsOfPairs<Host,Connection> inStorage;
     /**
      * An array of the hosts which is used to keep track of added hosts in the list.
      */
     private ArrayList<Host> hosts;
+    /**
+     * The hosts in the graph indexed by id (null for ids that are not in the graph).
+     */
+    private Host[] hostsById;
+    /**
+     * For each source host id, a hash table from destination host to the connection between them,
+     * so findEdge() doesn't walk the adjacency list. Null until the host has an outgoing edge.
+     */
+    private HashTable<Host,Connection>[] outIndex;
+    /**
+     * Initial number of slots in a host's destination table, the table rehashes as it fills.
+     */
+    private static final int INITIAL_INDEX_SLOTS = 4;
+    /**
+     * The position of each host in the hosts list, indexed by id, so a host can be removed without searching the list.
+     */
+    private int[] hostPositions;
+    /**
+     * The number of edges in the graph, kept up to date as edges are added and removed.
+     */
+    private int edgeCount = 0;
+    /**
+     * One more than the largest host id ever added to the graph.
+     */
+    private int idBound = 0;
+    /**
+     * The source of each edge in the graph, indexed by edge id (null if there is no such edge).
+     */
+    private Host[] edgeSources;
+    /**
+     * The destination of each edge in the graph, indexed by edge id (null if there is no such edge).
+     */
+    private Host[] edgeDests;
+    /**
+     * The listeners told about connections being added and removed.
+     */
+    private ArrayList<NetworkListener> listeners = new ArrayList<NetworkListener>();
+    /**
+     * The context new hosts and connections for this network are made in.
+     */
+    private final SimulationContext context;
+    /**
+     * Counts changes to the hosts and edges, so a view being walked can tell the graph changed under it.
+     */
+    private int modCount = 0;
+    /**
+     * Read-only view of the hosts list, made once.
+     */
+    private final Collection<Host> vertexView;
+    /**
+     * Live read-only view of every edge, made once.
+     */
+    private final Collection<Connection> edgeView = new EdgeView();
+    
+    /**
+     * Constructor for the class, with a context of its own.
+     */
+    public Network() {
+        this(new SimulationContext());
+    }
     
     /**
      * Constructor for the class.
      * Initiaize the storage with the max network value.
      * Create a new array list of host.
+     * @param context the context new hosts and connections are made in
      */
-    public Network() {
-        storage = new ArrayOfListsOfPairs<>(MAX_NETWORK_SIZE);
+    public Network(SimulationContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Invalid context\n");
+        }
+        this.context = context;
+        storage = new ArrayOfListsOfPairs<>(INITIAL_NETWORK_SIZE);
+        inStorage = new ArrayOfListsOfPairs<>(INITIAL_NETWORK_SIZE);
         hosts = new ArrayList<Host>();
+        vertexView = Collections.unmodifiableList(hosts);
+        hostsById = new Host[INITIAL_NETWORK_SIZE];
+        hostPositions = new int[INITIAL_NETWORK_SIZE];
+        outIndex = newIndexArray(INITIAL_NETWORK_SIZE);
+        edgeSources = new Host[INITIAL_NETWORK_SIZE];
+        edgeDests = new Host[INITIAL_NETWORK_SIZE];
+    }
+    
+    /**
+     * Make an empty array of destination tables (Java can't make generic arrays directly).
+     * @param size the number of slots
+     * @return the new array
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static HashTable<Host,Connection>[] newIndexArray(int size) {
+        return (HashTable<Host,Connection>[]) new HashTable[size];
+    }
+    
+    /**
+     * Returns the context new hosts and connections for this network are made in.
+     * @return the context
+     */
+    public SimulationContext getContext() {
+        return context;
+    }
+    
+    /**
+     * Register a listener to be told when connections are added or removed.
+     * @param listener the listener
+     */
+    public void addNetworkListener(NetworkListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+    
+    /**
+     * Stop telling a listener about changes.
+     * @param listener the listener
+     */
+    public void removeNetworkListener(NetworkListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Tell the listeners a connection was added.
+     * @param edge the connection
+     * @param source the source host
+     * @param dest the destination host
+     */
+    private void fireEdgeAdded(Connection edge, Host source, Host dest) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).edgeAdded(edge, source, dest);
+        }
+    }
+    
+    /**
+     * Tell the listeners several connections were added.
+     * @param edges the connections
+     */
+    private void fireEdgesAdded(List<Connection> edges) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).edgesAdded(edges);
+        }
+    }
+    
+    /**
+     * Tell the listeners a connection was removed.
+     * @param edge the connection
+     * @param source the source host
+     * @param dest the destination host
+     */
+    private void fireEdgeRemoved(Connection edge, Host source, Host dest) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).edgeRemoved(edge, source, dest);
+        }
+    }
+    
+    /**
+     * Tell the listeners several connections were removed.
+     * @param edges the connections
+     * @param sources the source host of each connection
+     * @param dests the destination host of each connection
+     */
+    private void fireEdgesRemoved(List<Connection> edges, List<Host> sources, List<Host> dests) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).edgesRemoved(edges, sources, dests);
+        }
+    }
+    
+    /**
+     * Make sure there are slots in the host-indexed storage for the given id.
+     * The slots grow by doubling, so adding hosts is amortized O(1).
+     * @param id the host id
+     */
+    private void ensureHostSlot(int id) {
+        if (id >= hostsById.length) {
+            int newSize = Math.max(id + 1, hostsById.length * 2);
+            hostsById = Arrays.copyOf(hostsById, newSize);
+            hostPositions = Arrays.copyOf(hostPositions, newSize);
+            outIndex = Arrays.copyOf(outIndex, newSize);
+            storage.ensureCapacity(newSize);
+            inStorage.ensureCapacity(newSize);
+        }
+    }
+    
+    /**
+     * Returns the host in this graph with the given id.
+     * @param id the host id
+     * @return the host, or null if there is no host with that id in the graph
+     */
+    public Host getHost(int id) {
+        if (id < 0 || id >= hostsById.length) {
+            return null;
+        }
+        return hostsById[id];
+    }
+    
+    /**
+     * Returns one more than the largest host id ever added to this graph.
+     * Ids of removed hosts leave gaps below this bound.
+     * @return the bound on host ids
+     */
+    public int getIdBound() {
+        return idBound;
+    }
+    
+    /**
+     * Record the endpoints of an edge in the edge index.
+     * Edge ids are handed out in order, so the index grows by doubling.
+     * @param edge the edge
+     * @param source the source of the edge
+     * @param dest the destination of the edge
+     */
+    private void indexEdge(Connection edge, Host source, Host dest) {
+        int id = edge.getId();
+        ensureEdgeSlot(id);
+        edgeSources[id] = source;
+        edgeDests[id] = dest;
+    }
+    
+    /**
+     * Make sure the edge index has a slot for the given edge id.
+     * @param id the edge id
+     */
+    private void ensureEdgeSlot(int id) {
+        if (id >= edgeSources.length) {
+            int newSize = Math.max(id + 1, edgeSources.length * 2);
+            edgeSources = Arrays.copyOf(edgeSources, newSize);
+            edgeDests = Arrays.copyOf(edgeDests, newSize);
+        }
+    }
+    
+    /**
+     * Remove an edge from the edge index.
+     * @param edge the edge
+     */
+    private void unindexEdge(Connection edge) {
+        edgeSources[edge.getId()] = null;
+        edgeDests[edge.getId()] = null;
+    }
+    
+    /**
+     * Check whether the edge index has an entry for the given edge.
+     * @param edge the edge
+     * @return true if the edge is in the index, false otherwise
+     */
+    private boolean isIndexed(Connection edge) {
+        return edge != null && edge.getId() >= 0 && edge.getId() < edgeSources.length
+            && edgeSources[edge.getId()] != null;
+    }
+    
+    /**
+     * A live read-only view of one host's adjacency list (or reverse adjacency list),
+     * showing either the hosts at the other ends (the keys) or the connections (the values).
+     * Walking it follows the list itself, so nothing is copied.
+     * @param <T> Host for the keys, Connection for the values
+     */
+    private final class AdjacencyView<T> extends AbstractCollection<T> {
+        /**
+         * The lists the host's list is in (storage or inStorage).
+         */
+        private final ArrayOfListsOfPairs<Host,Connection> lists;
+        /**
+         * The id of the host.
+         */
+        private final int id;
+        /**
+         * Whether to show the keys (hosts) instead of the values (connections).
+         */
+        private final boolean keys;
+        
+        /**
+         * Makes a view.
+         * @param lists the lists the host's list is in
+         * @param id the id of the host
+         * @param keys true to show the hosts, false to show the connections
+         */
+        AdjacencyView(ArrayOfListsOfPairs<Host,Connection> lists, int id, boolean keys) {
+            this.lists = lists;
+            this.id = id;
+            this.keys = keys;
+        }
+        
+        /**
+         * Returns the first node of the list, or null if the host has no list.
+         * @return the first node
+         */
+        private ArrayOfListsOfPairs.Node<Host,Connection> head() {
+            return (id >= 0 && id < lists.getNumLists()) ? lists.getHead(id) : null;
+        }
+        
+        /**
+         * Counts the list without copying it.
+         * @return the number of entries in the list
+         */
+        public int size() {
+            return (id >= 0 && id < lists.getNumLists()) ? lists.getListSize(id) : 0;
+        }
+        
+        /**
+         * Walks the list.
+         * @return an iterator over the list
+         */
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private ArrayOfListsOfPairs.Node<Host,Connection> next = head();
+                private final int expectedModCount = modCount;
+                
+                public boolean hasNext() {
+                    return next != null;
+                }
+                
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    KeyValuePair<Host,Connection> pair = next.pair;
+                    next = next.next;
+                    return (T) (keys ? pair.getKey() : pair.getValue());
+                }
+            };
+        }
+    }
+    
+    /**
+     * A live read-only view of every edge in the graph, walking each host's adjacency list in turn.
+     */
+    private final class EdgeView extends AbstractCollection<Connection> {
+        /**
+         * Returns the number of edges, which is kept up to date.
+         * @return the number of edges
+         */
+        public int size() {
+            return edgeCount;
+        }
+        
+        /**
+         * Looks the edge up in the edge index instead of walking the lists.
+         * @param o the edge
+         * @return true if the edge is in the graph
+         */
+        public boolean contains(Object o) {
+            return (o instanceof Connection) && containsEdge((Connection) o);
+        }
+        
+        /**
+         * Walks the edges.
+         * @return an iterator over the edges
+         */
+        public Iterator<Connection> iterator() {
+            return new Iterator<Connection>() {
+                private int hostIndex = 0;
+                private ArrayOfListsOfPairs.Node<Host,Connection> next = advance(null);
+                private final int expectedModCount = modCount;
+                
+                /**
+                 * Finds the node after the given one, moving on to the next host with edges
+                 * when the current list runs out.
+                 * @param node the current node, or null to start
+                 * @return the next node, or null when there are no more edges
+                 */
+                private ArrayOfListsOfPairs.Node<Host,Connection> advance(ArrayOfListsOfPairs.Node<Host,Connection> node) {
+                    node = (node == null) ? null : node.next;
+                    while (node == null && hostIndex < hosts.size()) {
+                        node = storage.getHead(hosts.get(hostIndex++).getId());
+                    }
+                    return node;
+                }
+                
+                public boolean hasNext() {
+                    return next != null;
+                }
+                
+                public Connection next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Connection edge = next.pair.getValue();
+                    next = advance(next);
+                    return edge;
+                }
+            };
+        }
     }
     
     /**
      * Returns a view of all edges in this graph. In general, this
      * obeys the Collection contract, and therefore makes no guarantees 
      * about the ordering of the vertices within the set.
+     * The view is live and read-only: it walks the adjacency lists
+     * without copying them, and the graph must not be changed while it is walked.
      * @return a Collection view of all edges in this graph
      */
     public Collection<Connection> getEdges() {
-        Collection<Connection> edges = new ArrayList<>();
-        for (int i = 0; i < hosts.size(); i++) {
-            int id = hosts.get(i).getId();
-            ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(id);
-            for (int j = 0; j < arr.size(); j++) {
-                edges.add(arr.get(j).getValue());
-            }
-        }
-        return edges;
+        return edgeView;
     }
     
     /**
      * Returns a view of all vertices in this graph. In general, this
      * obeys the Collection contract, and therefore makes no guarantees 
      * about the ordering of the vertices within the set.
+     * The view is live and read-only.
      * @return a Collection view of all vertices in this graph
      */
     public Collection<Host> getVertices() {
-        return hosts;
+        return vertexView;
     }
     
     
@@ -71,7 +450,8 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @return true iff this graph contains a vertex vertex
      */
     public boolean containsVertex(Host vertex) {
-        return getVertices().contains(vertex);
+        // Look the host up by id instead of searching the list of hosts.
+        return vertex != null && getHost(vertex.getId()) != null;
     }
     
     /**
@@ -81,7 +461,8 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @return true iff this graph contains an edge edge
      */
     public boolean containsEdge(Connection edge) {
-        return getEdges().contains(edge);
+        // The edge index has an entry for exactly the edges in the graph.
+        return isIndexed(edge);
     }
     
     /**
@@ -89,7 +470,7 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @return the number of edges in this graph
      */
     public int getEdgeCount() {
-        return getEdges().size();
+        return edgeCount;
     }
     
     /**
@@ -97,54 +478,31 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @return the number of vertices in this graph
      */
     public int getVertexCount() {
-        return getVertices().size();
+        return hosts.size();
     }
     
     /**
      * Returns a Collection view of the outgoing edges incident to vertex
-     * in this graph.
+     * in this graph. The view is live and read-only (see getEdges()).
      * @param vertex the vertex whose outgoing edges are to be returned
      * @return a Collection view of the outgoing edges incident 
      *     to vertex in this graph
      */
     public Collection<Connection> getOutEdges(Host vertex) {
-        Collection<Connection> outEdges = new ArrayList<>();
-        // Get the id (index) of the vertex.
-        int id = vertex.getId();
-        // Create an array list to get a list of all pairs at the given vertex's id.
-        ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(id);
-        // Loop through the list and add all the pair to the collection.
-        for (int i = 0; i < arr.size(); i++) {
-            outEdges.add(arr.get(i).getValue());
-        }
-        return outEdges;
+        // The values of the vertex's adjacency list are its outgoing edges.
+        return new AdjacencyView<Connection>(storage, vertex.getId(), false);
     }
     
     /**
      * Returns a Collection view of the incoming edges incident to vertex
-     * in this graph.
+     * in this graph. The view is live and read-only (see getEdges()).
      * @param vertex the vertex whose incoming edges are to be returned
      * @return  a Collection view of the incoming edges incident 
      *     to vertex in this graph
      */
     public Collection<Connection> getInEdges(Host vertex) {
-        // Create a colleciton to store the edges.
-        Collection<Connection> edges = new ArrayList<>();
-        // Loop through each added hosts in the arraylist.
-        for (int i = 0; i < hosts.size(); i++) {
-            // Get the id of the current vertex.
-            int id = hosts.get(i).getId();
-            // Get all the pairs from the linkedlist at the current id (index).
-            ArrayList<KeyValuePair<Host,Connection>> arr = storage.getAllPairs(id);
-            // Loop through each pair to find the vertex that matches the given vertex.
-            for (int j = 0; j < arr.size(); j++) {
-                if (arr.get(j).getKey().equals(vertex)) {
-                    // If yes, add the associated value to the collection.
-                    edges.add(arr.get(j).getValue());
-                }
-            }
-        }
-        return edges;
+        // The values of the vertex's reverse adjacency list are its incoming edges.
+        return new AdjacencyView<Connection>(inStorage, vertex.getId(), false);
     }
     
     /**
@@ -153,29 +511,14 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * which is connected to 
      * vertex by an edge e, where e is an outgoing edge of 
      * v and an incoming edge of vertex.
+     * The view is live and read-only (see getEdges()).
      * @param vertex the vertex whose predecessors are to be returned
      * @return  a Collection view of the predecessors of 
      *     vertex in this graph
      */
     public Collection<Host> getPredecessors(Host vertex) {
-        // Create a collection to store predecessors.
-        Collection<Host> predecessors = new ArrayList<>();
-        // Loop through each added vertex.
-        for (int i = 0; i < hosts.size(); i++) {
-            // Get the id of the current added vertex.
-            int id = hosts.get(i).getId();
-            // Get all pairs of the current vertex.
-            ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(id);
-            // Loop through each pair to find the predecessors if it matches the given vertex.
-            for (int j = 0; j < arr.size(); j++) {
-                if (arr.get(j).getKey().equals(vertex)) {
-                    // When found the match, break the loop immediately.
-                    predecessors.add(hosts.get(i));
-                    break;
-                }
-            }
-        }
-        return predecessors;
+        // The key of each pair in the reverse adjacency list is the source of an incoming edge.
+        return new AdjacencyView<Host>(inStorage, vertex.getId(), true);
     }
     
     /**
@@ -184,22 +527,14 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * which is connected to 
      * vertex by an edge e, where e is an incoming edge of 
      * v and an outgoing edge of vertex.
+     * The view is live and read-only (see getEdges()).
      * @param vertex the vertex whose predecessors are to be returned
      * @return  a Collection view of the successors of 
      *     vertex in this graph
      */
     public Collection<Host> getSuccessors(Host vertex) {
-        // Create a collection to store successors.
-        Collection<Host> successors = new ArrayList<>();
-        // Get the id (index) of the given vertex.
-        int id = vertex.getId();
-        // Get all pairs of the given index.
-        ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(id);
-        for (int i = 0; i < arr.size(); i++) {
-            // Loop through the list, and add all keys at the given index.
-            successors.add(arr.get(i).getKey());
-        }
-        return successors;
+        // The key of each pair in the adjacency list is the destination of an outgoing edge.
+        return new AdjacencyView<Host>(storage, vertex.getId(), true);
     }
     
     /**
@@ -213,23 +548,11 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @return  the source of directedEdge if it is a directed edge in this graph, or null otherwise
      */
     public Host getSource(Connection directedEdge) {
-        // Create a host source to store the source when found.
-        Host source = null;
-        // Loop through all added hosts.
-        for (int i = 0; i < hosts.size(); i++) {
-            // Get all the pairs at the current index (id).
-            ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(hosts.get(i).getId());
-            // Loop through each pair to find the assiciated edge (value).
-            for (int j = 0; j < arr.size(); j++) {
-                if (arr.get(j).getValue().equals(directedEdge)) {
-                    // When found the edge, set the source and return immediately.
-                    source = hosts.get(i);
-                    return source;
-                }
-            }
+        // Look the source up in the edge index, null if the edge is not in the graph.
+        if (!isIndexed(directedEdge)) {
+            return null;
         }
-        // If no source is found, return source -> null.
-        return source;
+        return edgeSources[directedEdge.getId()];
     }
     
     /**
@@ -244,22 +567,11 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @return  the destination of directedEdge if it is a directed edge in this graph, or null otherwise
      */
     public Host getDest(Connection directedEdge) {
-        // Create a host dest to store the destination.
-        Host dest = null;
-        // Loop through all added hosts.
-        for (int i = 0; i < hosts.size(); i++) {
-            // Get all pairs at the current id (index).
-            ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(hosts.get(i).getId());
-            // Loop through each pair to find the edge.
-            for (int j = 0; j < arr.size(); j++) {
-                if (arr.get(j).getValue().equals(directedEdge)) {
-                    // When found the edge, set the dest to its associated key and return immediately.
-                    dest = arr.get(j).getKey();
-                    return dest;
-                }
-            }
+        // Look the destination up in the edge index, null if the edge is not in the graph.
+        if (!isIndexed(directedEdge)) {
+            return null;
         }
-        return dest;
+        return edgeDests[directedEdge.getId()];
     }
     
     /**
@@ -287,24 +599,13 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @see Hypergraph#findEdgeSet(Object, Object) 
      */
     public Connection findEdge(Host v1, Host v2) {
-        Connection edge = null;
         // Check if neither v1 or v2 does not contains in the added hosts list, return null.
-        if (!hosts.contains(v1) || !hosts.contains(v2)) {
+        if (!containsVertex(v1) || !containsVertex(v2)) {
             return null;
         }
-        // Get all pairs at the index (id) of v1.
-        ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(v1.getId());
-        // Loop through each pair, if found v2, set the edge to its value.
-        for (int i = 0; i < arr.size(); i++) {
-            if (arr.get(i).getKey().equals(v2)) {
-                edge = arr.get(i).getValue();
-            }
-        }
-        // Double check if v1 is the source of the edge and v2 is the destination of the edge, if yes return edge.
-        if (v1 == getSource(edge) && v2 == getDest(edge)) {
-            return edge;
-        }
-        return null;
+        // Look v2 up in v1's destination table, a host with no outgoing edges has no table.
+        HashTable<Host,Connection> dests = outIndex[v1.getId()];
+        return (dests == null) ? null : dests.get(v2);
     }
     
     /**
@@ -327,20 +628,216 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      */
     public boolean addEdge(Connection e, Host v1, Host v2) {
         // Check if v1 and v2 are valid, if not throw an exception.
-        if (!hosts.contains(v1) || !hosts.contains(v2)) {
+        if (!containsVertex(v1) || !containsVertex(v2)) {
             throw new IllegalArgumentException("Invalid Host.\n");
         }
-        // If v1 is already connected to v2, return false immediately.
-        if (findEdge(v1, v2) != null) {
+        // If the edge is already in the graph or v1 is already connected to v2, return false immediately.
+        if (isIndexed(e) || findEdge(v1, v2) != null) {
             return false;
         }
         // Get id of the v1.
         int id = v1.getId();
         // Call the addNewEdge() method in ALP to add a new connection from v1 to v2.
         storage.addNewEdge(id, e, v2);
+        // Add the reverse entry to the list of v2.
+        inStorage.addNewEdge(v2.getId(), e, v1);
+        // Add v2 to the destination table of v1, making the table on the first outgoing edge.
+        if (outIndex[id] == null) {
+            outIndex[id] = new HashTable<Host,Connection>(INITIAL_INDEX_SLOTS);
+        }
+        outIndex[id].add(v2, e);
+        // Remember the endpoints of the new edge.
+        indexEdge(e, v1, v2);
+        edgeCount++;
+        modCount++;
+        fireEdgeAdded(e, v1, v2);
         return true;
     }
     
+    /**
+     * Adds many edges at once, each made by this network's context with the given weight.
+     * The i-th edge goes from the host with id sources[i] to the host with id dests[i].
+     * Edges already in the graph and repeats within the arrays (after the first) are skipped,
+     * the edges that are added end up in the lists in the same order as adding them one by one would.
+     * Everything is checked before anything is added, so a bad entry leaves the graph unchanged.
+     * Runs in O(V+E): duplicates are found with one counting sort, and the edge index and
+     * destination tables are sized once instead of growing edge by edge.
+     * Listeners are told about the new edges once, with edgesAdded().
+     * @param sources the source host ids
+     * @param dests the destination host ids
+     * @param weights the weights
+     * @return the number of edges added
+     * @throws IllegalArgumentException if the arrays are not the same length, an id is not
+     *     a host in the graph or a weight is less than 1
+     */
+    public int addEdges(int[] sources, int[] dests, int[] weights) {
+        // Check the arrays and every entry before changing anything.
+        if (sources == null || dests == null || weights == null
+            || sources.length != dests.length || sources.length != weights.length) {
+            throw new IllegalArgumentException("Invalid edge arrays.\n");
+        }
+        int count = sources.length;
+        for (int i = 0; i < count; i++) {
+            if (getHost(sources[i]) == null || getHost(dests[i]) == null) {
+                throw new IllegalArgumentException("Invalid Host.\n");
+            }
+            if (weights[i] < 1) {
+                throw new IllegalArgumentException("Invalid weight.\n");
+            }
+        }
+        // Sort the edges by (source, dest) with two stable counting sorts, so repeats end up
+        // next to each other with the first one in the arrays first.
+        int[] byDest = countingSort(dests, null, count);
+        int[] order = countingSort(sources, byDest, count);
+        // Keep the first of each run of equal pairs, unless the pair is already connected.
+        boolean[] keep = new boolean[count];
+        int[] newOut = new int[idBound];
+        int added = 0;
+        for (int k = 0; k < count; k++) {
+            int i = order[k];
+            if (k > 0) {
+                int prev = order[k - 1];
+                if (sources[prev] == sources[i] && dests[prev] == dests[i]) {
+                    continue;
+                }
+            }
+            if (findEdge(hostsById[sources[i]], hostsById[dests[i]]) == null) {
+                keep[i] = true;
+                newOut[sources[i]]++;
+                added++;
+            }
+        }
+        if (added == 0) {
+            return 0;
+        }
+        // Size the edge index and every destination table that gets new edges once.
+        ensureEdgeSlot(context.getLastConnectionId() + added);
+        for (int id = 0; id < idBound; id++) {
+            if (newOut[id] == 0) {
+                continue;
+            }
+            if (outIndex[id] == null) {
+                outIndex[id] = new HashTable<Host,Connection>(Math.max(INITIAL_INDEX_SLOTS, newOut[id]));
+            } else if (outIndex[id].size() + newOut[id] > 3 * outIndex[id].getNumSlots()) {
+                outIndex[id].rehash(outIndex[id].size() + newOut[id]);
+            }
+        }
+        // Make the kept edges in the order they were given, so they get the same ids as calling addEdge() for each.
+        Connection[] made = new Connection[count];
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                made[i] = context.newConnection(weights[i]);
+                indexEdge(made[i], hostsById[sources[i]], hostsById[dests[i]]);
+            }
+        }
+        // Fill the lists one host at a time (the sorts are stable, so each list still gets
+        // its edges in the order they were given): out lists in source order, in lists in dest order.
+        int[] bySource = countingSort(sources, null, count);
+        for (int k = 0; k < count; k++) {
+            int i = bySource[k];
+            if (keep[i]) {
+                storage.addNewEdge(sources[i], made[i], hostsById[dests[i]]);
+                outIndex[sources[i]].add(hostsById[dests[i]], made[i]);
+            }
+        }
+        for (int k = 0; k < count; k++) {
+            int i = byDest[k];
+            if (keep[i]) {
+                inStorage.addNewEdge(dests[i], made[i], hostsById[sources[i]]);
+            }
+        }
+        edgeCount += added;
+        modCount++;
+        // Tell the listeners about all the new edges at once, in the order they were given.
+        if (!listeners.isEmpty()) {
+            List<Connection> edges = new ArrayList<Connection>(added);
+            for (int i = 0; i < count; i++) {
+                if (keep[i]) {
+                    edges.add(made[i]);
+                }
+            }
+            fireEdgesAdded(Collections.unmodifiableList(edges));
+        }
+        return added;
+    }
+    
+    /**
+     * Stable counting sort of edge positions by a host id.
+     * @param ids the host id of each edge
+     * @param order the positions to sort, or null for 0 to count - 1
+     * @param count the number of edges
+     * @return the positions sorted by id, positions with the same id keep their order
+     */
+    private int[] countingSort(int[] ids, int[] order, int count) {
+        // Count the edges of each id, then turn the counts into starting positions.
+        int[] start = new int[idBound + 1];
+        for (int i = 0; i < count; i++) {
+            start[ids[i] + 1]++;
+        }
+        for (int id = 0; id < idBound; id++) {
+            start[id + 1] += start[id];
+        }
+        // Place each position after the ones before it with the same id.
+        int[] sorted = new int[count];
+        for (int k = 0; k < count; k++) {
+            int i = (order == null) ? k : order[k];
+            sorted[start[ids[i]]++] = i;
+        }
+        return sorted;
+    }
+    
+    /**
+     * Adds edges read from CSV, one "source,dest,weight" per line where a host is its id or its address.
+     * Blank lines, lines starting with # and a header line starting with "source" are skipped.
+     * The edges are added with addEdges(), so duplicates are skipped the same way.
+     * @param in where to read the CSV from
+     * @return the number of edges added
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if a line can't be understood, names a host that isn't in the graph
+     *     or has a weight less than 1
+     */
+    public int addEdges(Reader in) throws IOException {
+        HostPairReader reader = new HostPairReader(this, in, "weight", false, 1);
+        int[] sources = new int[16];
+        int[] dests = new int[16];
+        int[] weights = new int[16];
+        int count = 0;
+        while (reader.next()) {
+            // Grow the arrays by doubling.
+            if (count == sources.length) {
+                sources = Arrays.copyOf(sources, count * 2);
+                dests = Arrays.copyOf(dests, count * 2);
+                weights = Arrays.copyOf(weights, count * 2);
+            }
+            sources[count] = reader.getSource();
+            dests[count] = reader.getDest();
+            weights[count] = reader.getValue();
+            count++;
+        }
+        return addEdges(Arrays.copyOf(sources, count), Arrays.copyOf(dests, count), Arrays.copyOf(weights, count));
+    }
+    
+    /**
+     * Adds the given number of new hosts, made by this network's context.
+     * The host slots are grown once for all of them.
+     * @param count the number of hosts to add
+     * @return the new hosts, in the order they were made
+     * @throws IllegalArgumentException if count is negative
+     */
+    public Host[] addHosts(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid host count.\n");
+        }
+        ensureHostSlot(context.getLastHostId() + count);
+        hosts.ensureCapacity(hosts.size() + count);
+        Host[] added = new Host[count];
+        for (int i = 0; i < count; i++) {
+            added[i] = context.newHost();
+            addVertex(added[i]);
+        }
+        return added;
+    }
+    
     /**
      * Adds vertex to this graph.
      * Fails if vertex is null or already in the graph.
@@ -355,11 +852,16 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
             throw new IllegalArgumentException("Invalid Host\n");
         }
         // Check if the given vertex is already in the graph -> no duplicate vertex.
-        if (hosts.contains(vertex) == true) {
+        if (containsVertex(vertex)) {
             return false;
         } else {
-            // Otherwise, add the vertex to the array list of hosts.
+            // Otherwise, add the vertex to the array list of hosts and its slot.
+            ensureHostSlot(vertex.getId());
+            hostPositions[vertex.getId()] = hosts.size();
             hosts.add(vertex);
+            hostsById[vertex.getId()] = vertex;
+            idBound = Math.max(idBound, vertex.getId() + 1);
+            modCount++;
         }
         return true;
     }
@@ -373,22 +875,19 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      */
     public boolean removeEdge(Connection edge) {
         // Check if the given edge is null or the edge is not already in the graph, return false.
-        if (edge == null || !containsEdge(edge)) {
+        if (!isIndexed(edge)) {
             return false;
         }
-        // Loop through all added hosts.
-        for (int i = 0; i < hosts.size(); i++) {
-            // Get all pairs at the current id (index).
-            ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(hosts.get(i).getId());
-            // Loop through each pair.
-            for (int j = 0; j < arr.size(); j++) {
-                // Check if the given edge is found.
-                if (arr.get(j).getValue().equals(edge)) {
-                    // If yes, call the removePair() method in ALP to remove this pair with that matches the given edge.
-                    storage.removePair(hosts.get(i).getId(), arr.get(j).getKey());
-                }
-            }
-        }           
+        // The edge index says which list the edge is in, so only that list is searched.
+        Host source = edgeSources[edge.getId()];
+        Host dest = edgeDests[edge.getId()];
+        storage.removePair(source.getId(), dest);
+        inStorage.removePair(dest.getId(), source);
+        outIndex[source.getId()].remove(dest);
+        unindexEdge(edge);
+        edgeCount--;
+        modCount++;
+        fireEdgeRemoved(edge, source, dest);
         return true;
     }
     
@@ -410,21 +909,55 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      */
     public boolean removeVertex(Host vertex) {
         // Check if the given vertex is already in the graph or if vertex is null ->return false.
-        if (!hosts.contains(vertex) || vertex == null) {
+        if (!containsVertex(vertex)) {
             return false;
         }
-        // Loop through all added hosts to remove all edges that are connected to this vertex.
-        for (int i = 0; i < hosts.size(); i ++) {
-            ArrayList<KeyValuePair<Host, Connection>> arr = storage.getAllPairs(hosts.get(i).getId());
-            for (int j = 0; j < arr.size(); j++) {
-                if (arr.get(j).getKey().equals(vertex)) {
-                    // Remove the pair which is connected to the given vertex.
-                    storage.removePair(hosts.get(i).getId(), arr.get(j).getKey());
-                }
-            }
+        int id = vertex.getId();
+        modCount++;
+        // Keep the removed edges and their endpoints to tell the listeners about them at once.
+        List<Connection> removed = new ArrayList<Connection>();
+        List<Host> removedSources = new ArrayList<Host>();
+        List<Host> removedDests = new ArrayList<Host>();
+        // Remove every edge coming into the vertex from its source's list.
+        ArrayList<KeyValuePair<Host, Connection>> inPairs = inStorage.getAllPairs(id);
+        for (int i = 0; i < inPairs.size(); i++) {
+            Host source = inPairs.get(i).getKey();
+            storage.removePair(source.getId(), vertex);
+            inStorage.removePair(id, source);
+            outIndex[source.getId()].remove(vertex);
+            unindexEdge(inPairs.get(i).getValue());
+            edgeCount--;
+            removed.add(inPairs.get(i).getValue());
+            removedSources.add(source);
+            removedDests.add(vertex);
+        }
+        // Remove every edge going out of the vertex from its destination's reverse list.
+        ArrayList<KeyValuePair<Host, Connection>> outPairs = storage.getAllPairs(id);
+        for (int i = 0; i < outPairs.size(); i++) {
+            Host dest = outPairs.get(i).getKey();
+            inStorage.removePair(dest.getId(), vertex);
+            storage.removePair(id, dest);
+            outIndex[id].remove(dest);
+            unindexEdge(outPairs.get(i).getValue());
+            edgeCount--;
+            removed.add(outPairs.get(i).getValue());
+            removedSources.add(vertex);
+            removedDests.add(dest);
+        }
+        // Remove the vertex from the added hosts arraylist and free its slot.
+        // Move the last host into the removed host's position instead of shifting the whole list.
+        Host last = hosts.remove(hosts.size() - 1);
+        if (!last.equals(vertex)) {
+            hosts.set(hostPositions[id], last);
+            hostPositions[last.getId()] = hostPositions[id];
+        }
+        hostsById[id] = null;
+        outIndex[id] = null;
+        // Tell the listeners once, now that the vertex is gone.
+        if (!removed.isEmpty()) {
+            fireEdgesRemoved(Collections.unmodifiableList(removed), Collections.unmodifiableList(removedSources),
+                             Collections.unmodifiableList(removedDests));
         }
-        // Remove the vertex from the added hosts arraylist.
-        hosts.remove(vertex);
         return true;
     }
     
@@ -441,19 +974,20 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      */
     public static void main(String[] args) {
         Host[] hosts = new Host[10];
-        Factory<Host> hostFactory = Host.getFactory();
+        SimulationContext context = new SimulationContext();
+        Factory<Host> hostFactory = context.getHostFactory();
         for(int i = 0; i < hosts.length; i++) {
             hosts[i] = hostFactory.create();
         }
         
         Connection[] connections = new Connection[10];
-        Factory<Connection> connFactory = Connection.getFactory();
+        Factory<Connection> connFactory = context.getConnectionFactory();
         for(int i = 0; i < connections.length; i++) {
             connections[i] = connFactory.create();
         }
         
         //constructs a graph
-        Network graph = new Network();
+        Network graph = new Network(context);
         graph.addVertex(hosts[0]);
         graph.addVertex(hosts[1]);
         graph.addEdge(connections[0],hosts[0],hosts[1]);
@@ -472,6 +1006,146 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
             System.out.println("Yay");
         }
         
+        //random edits checked against a simple list of edges
+        if(checkEndpoints(new Random(1))) {
+            System.out.println("Yay");
+        }
+        if(checkInEdges(new Random(2))) {
+            System.out.println("Yay");
+        }
+    }
+    
+    /**
+     * Makes one random edit (add an edge, remove an edge, remove a host or add it back)
+     * to the graph and to a model of it: a list of edges and their endpoints.
+     * @param graph the graph
+     * @param hosts the hosts that may be in the graph
+     * @param edges the model's edges
+     * @param ends the model's endpoints, {source, dest} for each edge
+     * @param rand the random number generator
+     * @return false if the graph did something the model didn't
+     */
+    private static boolean editRandomly(Network graph, Host[] hosts, List<Connection> edges, List<Host[]> ends, Random rand) {
+        int op = rand.nextInt(10);
+        if(op < 6) {
+            Host from = hosts[rand.nextInt(hosts.length)];
+            Host to = hosts[rand.nextInt(hosts.length)];
+            if(!graph.containsVertex(from) || !graph.containsVertex(to)) return true;
+            boolean connected = false;
+            for(Host[] end : ends) {
+                if(end[0].equals(from) && end[1].equals(to)) connected = true;
+            }
+            Connection c = graph.getContext().newConnection();
+            if(graph.addEdge(c, from, to) == connected) return false;
+            if(!connected) {
+                edges.add(c);
+                ends.add(new Host[] {from, to});
+            }
+        }
+        else if(op < 9) {
+            if(edges.isEmpty()) return true;
+            int i = rand.nextInt(edges.size());
+            if(!graph.removeEdge(edges.get(i)) || graph.removeEdge(edges.get(i))) return false;
+            edges.remove(i);
+            ends.remove(i);
+        }
+        else {
+            Host h = hosts[rand.nextInt(hosts.length)];
+            if(!graph.containsVertex(h)) {
+                return graph.addVertex(h);
+            }
+            if(!graph.removeVertex(h)) return false;
+            for(int i = edges.size() - 1; i >= 0; i--) {
+                if(ends.get(i)[0].equals(h) || ends.get(i)[1].equals(h)) {
+                    edges.remove(i);
+                    ends.remove(i);
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks the reverse adjacency lists: after every random edit, each host's in-edges,
+     * predecessors, in-degree, neighbors, incident edges and degree must match the model.
+     * @param rand the random number generator
+     * @return true if every check passed
+     */
+    private static boolean checkInEdges(Random rand) {
+        for(int trial = 0; trial < 30; trial++) {
+            Network graph = new Network(new SimulationContext(trial));
+            Host[] hosts = graph.addHosts(5 + rand.nextInt(40));
+            List<Connection> edges = new ArrayList<>();
+            List<Host[]> ends = new ArrayList<>();
+            for(int step = 0; step < 400; step++) {
+                if(!editRandomly(graph, hosts, edges, ends, rand)) return false;
+                for(Host h : hosts) {
+                    if(!graph.containsVertex(h)) continue;
+                    Set<Connection> in = new HashSet<>();
+                    Set<Connection> incident = new HashSet<>();
+                    Set<Host> preds = new HashSet<>();
+                    Set<Host> neighbors = new HashSet<>();
+                    for(int i = 0; i < edges.size(); i++) {
+                        Host source = ends.get(i)[0];
+                        Host dest = ends.get(i)[1];
+                        if(dest.equals(h)) {
+                            in.add(edges.get(i));
+                            preds.add(source);
+                            neighbors.add(source);
+                        }
+                        if(source.equals(h)) {
+                            neighbors.add(dest);
+                        }
+                        if(source.equals(h) || dest.equals(h)) {
+                            incident.add(edges.get(i));
+                        }
+                    }
+                    if(graph.inDegree(h) != in.size() || graph.getInEdges(h).size() != in.size()
+                       || !in.equals(new HashSet<>(graph.getInEdges(h)))) return false;
+                    if(graph.getPredecessorCount(h) != preds.size() || !preds.equals(new HashSet<>(graph.getPredecessors(h)))) return false;
+                    if(!neighbors.equals(new HashSet<>(graph.getNeighbors(h))) || graph.getNeighborCount(h) != graph.getNeighbors(h).size()) return false;
+                    if(!incident.equals(new HashSet<>(graph.getIncidentEdges(h))) || graph.degree(h) != incident.size()) return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks the edge index: after every random edit, each edge's source, destination,
+     * endpoints and opposite ends must match the model, and removed edges must be gone.
+     * @param rand the random number generator
+     * @return true if every check passed
+     */
+    private static boolean checkEndpoints(Random rand) {
+        for(int trial = 0; trial < 30; trial++) {
+            Network graph = new Network(new SimulationContext(trial));
+            Host[] hosts = graph.addHosts(5 + rand.nextInt(40));
+            List<Connection> edges = new ArrayList<>();
+            List<Host[]> ends = new ArrayList<>();
+            List<Connection> removed = new ArrayList<>();
+            for(int step = 0; step < 400; step++) {
+                List<Connection> before = new ArrayList<>(edges);
+                if(!editRandomly(graph, hosts, edges, ends, rand)) return false;
+                before.removeAll(edges);
+                removed.addAll(before);
+                if(graph.getEdgeCount() != edges.size()) return false;
+                for(int i = 0; i < edges.size(); i++) {
+                    Connection c = edges.get(i);
+                    Host source = ends.get(i)[0];
+                    Host dest = ends.get(i)[1];
+                    if(!source.equals(graph.getSource(c)) || !dest.equals(graph.getDest(c))) return false;
+                    Pair<Host> pair = graph.getEndpoints(c);
+                    if(!source.equals(pair.getFirst()) || !dest.equals(pair.getSecond())) return false;
+                    if(!dest.equals(graph.getOpposite(source, c)) || !source.equals(graph.getOpposite(dest, c))) return false;
+                    if(!graph.containsEdge(c)) return false;
+                }
+                for(Connection c : removed) {
+                    if(graph.containsEdge(c) || graph.getSource(c) != null || graph.getDest(c) != null) return false;
+                }
+            }
+        }
+        return true;
     }
     
     //********************************************************************************
@@ -598,7 +1272,9 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @return the number of neighboring vertices
      */
     public int getNeighborCount(Host vertex) {
-        return getNeighbors(vertex).size();
+        // Count both lists without copying them, a self-loop is in both but counted once.
+        int count = getSuccessorCount(vertex) + getPredecessorCount(vertex);
+        return (findEdge(vertex, vertex) != null) ? count - 1 : count;
     }
     
     /**
@@ -623,7 +1299,9 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
      * @see Hypergraph#getNeighborCount(Object)
      */
     public int degree(Host vertex) {
-        return getIncidentEdges(vertex).size();
+        // Count both lists without copying them, a self-loop is in both but counted once.
+        int count = outDegree(vertex) + inDegree(vertex);
+        return (findEdge(vertex, vertex) != null) ? count - 1 : count;
     }
     
     /**
@@ -873,8 +1551,30 @@ public class Network implements Graph<Host,Connection>, DirectedGraph<Host,Conne
         return storage;
     }
     
+    /**
+     * Estimates the memory used by the reverse adjacency list
+     * that backs getInEdges, getPredecessors and inDegree.
+     * @return the estimated size in bytes
+     */
+    public long getReverseIndexFootprint() {
+        return inStorage.memoryFootprint();
+    }
+    
+    /**
+     * Takes a compressed (CSR) snapshot of the network for
+     * read-only work such as routing. Changes made to the
+     * network afterwards are not seen by the snapshot.
+     * @return the snapshot
+     */
+    public NetworkSnapshot snapshot() {
+        return new NetworkSnapshot(this);
+    }
+    
     /**
      * Returns a {@code Factory} that creates an instance of this graph type.
+     * Each network it makes has a context of its own; use
+     * SimulationContext.getNetworkFactory() to share a context with
+     * the factories the hosts and connections come from.
      * param Host the vertex type for the graph factory
      * param Connection the edge type for the graph factory
      * @return a new Factory of Graph of Host and connection
@@ -0,0 +1,42 @@
+import java.util.List;
+
+/**
+ *  Something that wants to be told when connections are
+ *  added to or removed from a network. Removing a host is
+ *  seen as removing all of its connections at once, and adding
+ *  many connections at once is told once for all of them.
+ */
+public interface NetworkListener {
+    /**
+     *  Called after a connection has been added.
+     *  @param edge the new connection
+     *  @param source the host the connection leaves
+     *  @param dest the host the connection goes to
+     */
+    void edgeAdded(Connection edge, Host source, Host dest);
+
+    /**
+     *  Called after several connections have been added at once.
+     *  They are all in the network, so their hosts can be looked up.
+     *  @param edges the new connections, in the order they were given
+     */
+    void edgesAdded(List<Connection> edges);
+
+    /**
+     *  Called after a connection has been removed.
+     *  @param edge the removed connection
+     *  @param source the host the connection left
+     *  @param dest the host the connection went to
+     */
+    void edgeRemoved(Connection edge, Host source, Host dest);
+
+    /**
+     *  Called after several connections have been removed at once
+     *  (all the connections of a removed host). They are no longer
+     *  in the network, so their hosts are passed along with them.
+     *  @param edges the removed connections
+     *  @param sources the host each connection left
+     *  @param dests the host each connection went to
+     */
+    void edgesRemoved(List<Connection> edges, List<Host> sources, List<Host> dests);
+}
@@ -0,0 +1,366 @@
+import java.util.Arrays;
+
+/**
+ *  A copy of a network's adjacency in compressed sparse row (CSR)
+ *  form. The connections leaving the host with id u are stored at
+ *  positions edgeStart(u) to edgeEnd(u)-1 of three parallel arrays
+ *  (target host id, weight and connection id), so read-only code
+ *  like Dijkstra's algorithm can walk them without allocating
+ *  anything. The connections of each host are kept in the same
+ *  order Network.getOutEdges() returns them.
+ *
+ *  <p>Changes to the network afterwards are not seen by the
+ *  snapshot. Whoever owns one can follow small changes with
+ *  removeEdge() and addEdge(), which keep that order: removing a
+ *  connection leaves a free slot at the end of its host's range,
+ *  and a connection can be added back into a free slot. Nothing
+ *  may read the snapshot while it is being changed.
+ *
+ *  <p>Each connection costs 12 bytes, plus 8 bytes (start and end)
+ *  and a reference per host id. Finding the connection between two
+ *  hosts needs an index that costs 8 more bytes per connection, so
+ *  it is only built the first time it is used.
+ */
+public class NetworkSnapshot {
+    /**
+     *  offsets[u] is where host u's connections start,
+     *  offsets[u+1] is where the room for them ends.
+     */
+    private final int[] offsets;
+
+    /**
+     *  ends[u] is one past host u's last connection; the slots
+     *  from there to offsets[u+1] are free.
+     */
+    private final int[] ends;
+
+    /**
+     *  The number of connections.
+     */
+    private int numEdges;
+
+    /**
+     *  The id of the destination host of each connection.
+     */
+    private final int[] targets;
+
+    /**
+     *  The weight of each connection.
+     */
+    private final int[] weights;
+
+    /**
+     *  The id of each connection.
+     */
+    private final int[] edgeIds;
+
+    /**
+     *  The hosts by id, null for ids not in the network.
+     */
+    private final Host[] hosts;
+
+    /**
+     *  The number of hosts.
+     */
+    private final int numHosts;
+
+    /**
+     *  The index linkPosition() uses, null until it is first
+     *  called (or after a change). It is only ever set to a
+     *  fully built index, so searches on other threads see
+     *  either null or all of it.
+     */
+    private volatile LinkIndex linkIndex = null;
+
+    /**
+     *  Each host's connections sorted by destination. A network
+     *  has at most one connection from a host to another, so the
+     *  connections of host u are at offsets[u] to ends[u]-1
+     *  here too.
+     */
+    private static final class LinkIndex {
+        /**
+         *  The id of the destination of each connection, in
+         *  increasing order for each host.
+         */
+        final int[] targets;
+
+        /**
+         *  The position in the snapshot of the connection
+         *  to each destination in targets.
+         */
+        final int[] positions;
+
+        /**
+         *  Makes an index.
+         *  @param targets the destinations, sorted for each host
+         *  @param positions the position of the connection to each destination
+         */
+        LinkIndex(int[] targets, int[] positions) {
+            this.targets = targets;
+            this.positions = positions;
+        }
+    }
+
+    /**
+     *  Builds a snapshot of the given network.
+     *  @param graph the network to copy
+     */
+    public NetworkSnapshot(Network graph) {
+        int bound = 0;
+        for(Host h : graph.getVertices()) {
+            bound = Math.max(bound, h.getId() + 1);
+        }
+        hosts = new Host[bound];
+        offsets = new int[bound + 1];
+        numHosts = graph.getVertexCount();
+
+        // Count the connections of each host first so the arrays are sized exactly.
+        ArrayOfListsOfPairs<Host,Connection> storage = graph.getInternalTable();
+        for(Host h : graph.getVertices()) {
+            hosts[h.getId()] = h;
+            offsets[h.getId() + 1] = storage.getListSize(h.getId());
+        }
+        for(int u = 0; u < bound; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        ends = Arrays.copyOfRange(offsets, 1, bound + 1);
+        numEdges = offsets[bound];
+
+        // Fill in each host's connections in adjacency list order.
+        targets = new int[offsets[bound]];
+        weights = new int[offsets[bound]];
+        edgeIds = new int[offsets[bound]];
+        for(Host h : graph.getVertices()) {
+            int i = offsets[h.getId()];
+            for(ArrayOfListsOfPairs.Node<Host,Connection> node = storage.getHead(h.getId()); node != null; node = node.next) {
+                targets[i] = node.pair.getKey().getId();
+                weights[i] = node.pair.getValue().getWeight();
+                edgeIds[i] = node.pair.getValue().getId();
+                i++;
+            }
+        }
+    }
+
+    /**
+     *  Returns one more than the largest host id.
+     *  @return the bound on host ids
+     */
+    public int getIdBound() {
+        return hosts.length;
+    }
+
+    /**
+     *  Returns the number of hosts.
+     *  @return the number of hosts
+     */
+    public int getVertexCount() {
+        return numHosts;
+    }
+
+    /**
+     *  Returns the number of connections.
+     *  @return the number of connections
+     */
+    public int getEdgeCount() {
+        return numEdges;
+    }
+
+    /**
+     *  Returns the host with the given id.
+     *  @param id the host id
+     *  @return the host, or null if there is no host with that id
+     */
+    public Host getHost(int id) {
+        return hosts[id];
+    }
+
+    /**
+     *  Returns the position of the first connection leaving a host.
+     *  @param id the host id
+     *  @return the position of the host's first connection
+     */
+    public int edgeStart(int id) {
+        return offsets[id];
+    }
+
+    /**
+     *  Returns one past the position of the last connection leaving a host.
+     *  @param id the host id
+     *  @return the end of the host's connections
+     */
+    public int edgeEnd(int id) {
+        return ends[id];
+    }
+
+    /**
+     *  Returns the number of connections leaving a host.
+     *  @param id the host id
+     *  @return the host's out degree
+     */
+    public int outDegree(int id) {
+        return ends[id] - offsets[id];
+    }
+
+    /**
+     *  Returns the destination of a connection.
+     *  @param e the position of the connection
+     *  @return the id of the destination host
+     */
+    public int getTarget(int e) {
+        return targets[e];
+    }
+
+    /**
+     *  Returns the weight of a connection.
+     *  @param e the position of the connection
+     *  @return the weight
+     */
+    public int getWeight(int e) {
+        return weights[e];
+    }
+
+    /**
+     *  Returns the id of a connection.
+     *  @param e the position of the connection
+     *  @return the connection id
+     */
+    public int getEdgeId(int e) {
+        return edgeIds[e];
+    }
+
+    /**
+     *  Finds the connection from one host to another. This takes
+     *  time logarithmic in the host's out degree. The first call
+     *  builds an index; it is safe to call from several threads.
+     *  @param from the id of the host the connection leaves
+     *  @param to the id of the host the connection goes to
+     *  @return the position of the connection, or -1 if the hosts aren't connected
+     */
+    public int linkPosition(int from, int to) {
+        if(from < 0 || from >= hosts.length) return -1;
+        LinkIndex index = linkIndex;
+        if(index == null) index = buildLinkIndex();
+        int i = Arrays.binarySearch(index.targets, offsets[from], ends[from], to);
+        return (i < 0) ? -1 : index.positions[i];
+    }
+
+    /**
+     *  Builds the index linkPosition() uses, unless another
+     *  thread got there first.
+     *  @return the index
+     */
+    private synchronized LinkIndex buildLinkIndex() {
+        if(linkIndex != null) return linkIndex;
+
+        // Sort each host's connections by destination.
+        long[] keys = new long[targets.length];
+        int[] sortedTargets = new int[targets.length];
+        int[] positions = new int[targets.length];
+        for(int u = 0; u < hosts.length; u++) {
+            int start = offsets[u];
+            int end = ends[u];
+            for(int e = start; e < end; e++) {
+                keys[e] = ((long) targets[e] << 32) | (e - start);
+            }
+            Arrays.sort(keys, start, end);
+            for(int k = start; k < end; k++) {
+                sortedTargets[k] = (int) (keys[k] >>> 32);
+                positions[k] = start + (int) keys[k];
+            }
+        }
+        linkIndex = new LinkIndex(sortedTargets, positions);
+        return linkIndex;
+    }
+
+    /**
+     *  Removes the connection from one host to another, the way
+     *  Network.removeEdge() does: the host's later connections
+     *  move back one slot, leaving a free slot at the end of its
+     *  range. This takes time linear in the host's out degree.
+     *  @param from the id of the host the connection leaves
+     *  @param to the id of the host the connection goes to
+     *  @return false if the hosts weren't connected
+     */
+    public boolean removeEdge(int from, int to) {
+        if(from < 0 || from >= hosts.length) return false;
+        int end = ends[from];
+        for(int e = offsets[from]; e < end; e++) {
+            if(targets[e] == to) {
+                System.arraycopy(targets, e + 1, targets, e, end - e - 1);
+                System.arraycopy(weights, e + 1, weights, e, end - e - 1);
+                System.arraycopy(edgeIds, e + 1, edgeIds, e, end - e - 1);
+                ends[from]--;
+                numEdges--;
+                linkIndex = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     *  Adds a connection from one host to another in front of the
+     *  host's other connections, where Network.addEdge() puts it.
+     *  This only works if a connection of the host was removed
+     *  before, leaving a free slot. This takes time linear in the
+     *  host's out degree.
+     *  @param from the id of the host the connection leaves
+     *  @param to the id of the host the connection goes to
+     *  @param weight the weight of the connection
+     *  @param edgeId the id of the connection
+     *  @return false if there was no room (take a new snapshot instead)
+     */
+    public boolean addEdge(int from, int to, int weight, int edgeId) {
+        if(from < 0 || from >= hosts.length || to < 0 || to >= hosts.length) return false;
+        int start = offsets[from];
+        int end = ends[from];
+        if(end == offsets[from + 1]) return false;
+        System.arraycopy(targets, start, targets, start + 1, end - start);
+        System.arraycopy(weights, start, weights, start + 1, end - start);
+        System.arraycopy(edgeIds, start, edgeIds, start + 1, end - start);
+        targets[start] = to;
+        weights[start] = weight;
+        edgeIds[start] = edgeId;
+        ends[from]++;
+        numEdges++;
+        linkIndex = null;
+        return true;
+    }
+
+    /**
+     *  Returns the largest connection weight.
+     *  @return the largest weight, or 0 if there are no connections
+     */
+    public int getMaxWeight() {
+        int max = 0;
+        for(int u = 0; u < hosts.length; u++) {
+            for(int e = offsets[u]; e < ends[u]; e++) {
+                max = Math.max(max, weights[e]);
+            }
+        }
+        return max;
+    }
+
+    /**
+     *  Estimates the memory used by the arrays of this snapshot
+     *  (not counting the hosts themselves).
+     *  @return the size in bytes
+     */
+    public long memoryFootprint() {
+        // 16 bytes of header per array, 4 bytes per int and (compressed) reference.
+        long size = 6 * 16L + 4L * offsets.length + 4L * ends.length + 12L * targets.length + 4L * hosts.length;
+        if(linkIndex != null) {
+            size += 3 * 16L + 8L * targets.length;
+        }
+        return size;
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "NetworkSnapshot[hosts=" + numHosts + ", connections=" + numEdges + "]";
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ *  The next hop from source hosts to every destination host,
+ *  stored as one row of host ids per source. Instead of a node
+ *  and a key-value pair for every route, a route costs 2 bytes
+ *  (or 4 bytes once there are more than 32768 host ids).
+ *
+ *  <p>A row only exists for the sources routes were computed
+ *  for. Different rows can be filled from different threads at
+ *  the same time.
+ */
+public class NextHopMatrix {
+    /**
+     *  The next hop stored when there is no route.
+     */
+    public static final int NO_ROUTE = -1;
+
+    /**
+     *  The network the host ids belong to.
+     */
+    private final Network graph;
+
+    /**
+     *  One more than the largest host id that can be stored.
+     */
+    private final int idBound;
+
+    /**
+     *  The rows by source id when the ids fit in a short,
+     *  null otherwise.
+     */
+    private final short[][] shortRows;
+
+    /**
+     *  The rows by source id when the ids don't fit in a
+     *  short, null otherwise.
+     */
+    private final int[][] intRows;
+
+    /**
+     *  Makes an empty matrix for the hosts of a network.
+     *  @param graph the network the hosts are in
+     *  @param idBound one more than the largest host id
+     */
+    public NextHopMatrix(Network graph, int idBound) {
+        this.graph = graph;
+        this.idBound = idBound;
+        if(idBound <= Short.MAX_VALUE + 1) {
+            shortRows = new short[idBound][];
+            intRows = null;
+        }
+        else {
+            shortRows = null;
+            intRows = new int[idBound][];
+        }
+    }
+
+    /**
+     *  Returns one more than the largest host id that can be stored.
+     *  @return the bound on host ids
+     */
+    public int getIdBound() {
+        return idBound;
+    }
+
+    /**
+     *  Checks whether routes have been stored for a source.
+     *  @param source the id of the source host
+     *  @return true if the source has a row
+     */
+    public boolean hasRow(int source) {
+        if(source < 0 || source >= idBound) return false;
+        return (shortRows != null) ? shortRows[source] != null : intRows[source] != null;
+    }
+
+    /**
+     *  Makes an empty row for a source, throwing away any
+     *  routes already stored for it.
+     *  @param source the id of the source host
+     */
+    public void clearRow(int source) {
+        if(shortRows != null) {
+            shortRows[source] = new short[idBound];
+            Arrays.fill(shortRows[source], (short) NO_ROUTE);
+        }
+        else {
+            intRows[source] = new int[idBound];
+            Arrays.fill(intRows[source], NO_ROUTE);
+        }
+    }
+
+    /**
+     *  Returns the id of the next hop from a source to a destination.
+     *  @param source the id of the source host
+     *  @param dest the id of the destination host
+     *  @return the id of the next hop, or NO_ROUTE if there isn't one
+     */
+    public int getNextHop(int source, int dest) {
+        if(!hasRow(source) || dest < 0 || dest >= idBound) return NO_ROUTE;
+        return (shortRows != null) ? shortRows[source][dest] : intRows[source][dest];
+    }
+
+    /**
+     *  Returns the next hop from a source to a destination.
+     *  @param source the source host
+     *  @param dest the destination host
+     *  @return the next hop, or null if there isn't one
+     */
+    public Host getNextHop(Host source, Host dest) {
+        int next = getNextHop(source.getId(), dest.getId());
+        return (next == NO_ROUTE) ? null : graph.getHost(next);
+    }
+
+    /**
+     *  Stores the next hop from a source to a destination. The
+     *  source must have a row.
+     *  @param source the id of the source host
+     *  @param dest the id of the destination host
+     *  @param nextHop the id of the next hop, or NO_ROUTE to remove the route
+     */
+    public void setNextHop(int source, int dest, int nextHop) {
+        if(shortRows != null) {
+            shortRows[source][dest] = (short) nextHop;
+        }
+        else {
+            intRows[source][dest] = nextHop;
+        }
+    }
+
+    /**
+     *  Counts the routes stored for a source.
+     *  @param source the id of the source host
+     *  @return the number of destinations with a next hop
+     */
+    public int countRoutes(int source) {
+        if(!hasRow(source)) return 0;
+        int count = 0;
+        for(int dest = 0; dest < idBound; dest++) {
+            if(getNextHop(source, dest) != NO_ROUTE) count++;
+        }
+        return count;
+    }
+
+    /**
+     *  Returns the host with the given id.
+     *  @param id the host id
+     *  @return the host, or null if it isn't in the network
+     */
+    public Host getHost(int id) {
+        return graph.getHost(id);
+    }
+
+    /**
+     *  Estimates the memory used by the matrix.
+     *  @return the size in bytes
+     */
+    public long memoryFootprint() {
+        // 16 bytes of header per array, plus the rows.
+        int cell = (shortRows != null) ? 2 : 4;
+        long bytes = 16L + 4L * idBound;
+        for(int source = 0; source < idBound; source++) {
+            if(hasRow(source)) {
+                bytes += 16L + (((long) cell * idBound + 7) & ~7L);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        int rows = 0;
+        for(int source = 0; source < idBound; source++) {
+            if(hasRow(source)) rows++;
+        }
+        return "NextHopMatrix[ids=" + idBound + ", rows=" + rows + "]";
+    }
+}
@@ -0,0 +1,537 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *  A discrete-event simulation of packets moving through the
+ *  network. Each packet hops along the next hops of the routing
+ *  tables, and crossing a connection takes as much simulated
+ *  time as the connection's weight. Events (a packet arriving at
+ *  a host, or a connection sending the packets at the front of
+ *  its queue) are handled in order of simulated time, so any
+ *  number of packets can be in flight at once.
+ *
+ *  <p>A connection with a limited capacity sends that many
+ *  packets per unit of time. Other packets wait in its queue,
+ *  or are dropped if its drop policy says so, and the simulator
+ *  reports how busy each connection was, how deep the queues got
+ *  and how many packets were dropped.
+ *
+ *  <p>The simulation doesn't draw anything, so it can run
+ *  without the GUI. Packets are kept in parallel arrays indexed
+ *  by packet id and events are plain numbers, so handling an
+ *  event allocates nothing.
+ *
+ *  <p>Each simulator keeps its own queues, made for the
+ *  connections with a limited capacity, so simulators of the same
+ *  network don't disturb each other. A connection's capacity and
+ *  queue limit are read when the simulator is made.
+ */
+public class PacketSimulator {
+    /**
+     *  The network the packets move through.
+     */
+    private final Network graph;
+
+    /**
+     *  The routing code that knows the next hops.
+     */
+    private final ThreeTenNetwork alg;
+
+    /**
+     *  The connections and their weights, taken when
+     *  the simulator was made.
+     */
+    private final NetworkSnapshot snapshot;
+
+    /**
+     *  The connection at each position of the snapshot.
+     */
+    private final Connection[] links;
+
+    /**
+     *  The capacity of the connection at each position.
+     */
+    private final int[] capacities;
+
+    /**
+     *  The queue of the connection at each position, null
+     *  for connections with unlimited capacity (nothing
+     *  waits for them, so there is nothing to keep).
+     */
+    private final LinkQueue[] queues;
+
+    /**
+     *  The random numbers for drop policies.
+     */
+    private final Random rand;
+
+    /**
+     *  The pending events. A packet arriving is a time, a packet
+     *  id and the id of the host it arrives at. A connection
+     *  sending is a time, -1 minus the connection's position in
+     *  the snapshot, and 0.
+     */
+    private final EventQueue events = new EventQueue(1024);
+
+    /**
+     *  The destination host id of each packet.
+     */
+    private int[] packetDest = new int[1024];
+
+    /**
+     *  The time each packet was sent.
+     */
+    private long[] packetSent = new long[1024];
+
+    /**
+     *  The number of connections each packet has crossed.
+     */
+    private int[] packetHops = new int[1024];
+
+    /**
+     *  The number of packets sent.
+     */
+    private int numPackets = 0;
+
+    /**
+     *  The current simulated time.
+     */
+    private long now = 0;
+
+    /**
+     *  The number of packets that reached their destination.
+     */
+    private long delivered = 0;
+
+    /**
+     *  The number of packets that were dropped.
+     */
+    private long dropped = 0;
+
+    /**
+     *  The number of packets dropped by connection queues.
+     */
+    private long queueDrops = 0;
+
+    /**
+     *  The total time delivered packets took.
+     */
+    private long totalLatency = 0;
+
+    /**
+     *  The longest time a delivered packet took.
+     */
+    private long maxLatency = 0;
+
+    /**
+     *  The total number of hops delivered packets took.
+     */
+    private long totalHops = 0;
+
+    /**
+     *  The number of events handled.
+     */
+    private long eventsProcessed = 0;
+
+    /**
+     *  The real time spent handling events, in nanoseconds.
+     */
+    private long runNanos = 0;
+
+    /**
+     *  Makes a simulator for a network whose routes have been
+     *  computed (or will be computed on first use in lazy mode).
+     *  @param graph the network
+     *  @param alg the routing code, already started on the network
+     *  @throws IllegalStateException if the routes have not been computed
+     */
+    public PacketSimulator(Network graph, ThreeTenNetwork alg) {
+        this(graph, alg, 0);
+    }
+
+    /**
+     *  Makes a simulator for a network whose routes have been
+     *  computed, with a seed for the drop policies' random numbers.
+     *  @param graph the network
+     *  @param alg the routing code, already started on the network
+     *  @param seed the seed for random numbers
+     *  @throws IllegalStateException if the routes have not been computed
+     */
+    public PacketSimulator(Network graph, ThreeTenNetwork alg, long seed) {
+        if(alg.getNextHopMatrix() == null) {
+            throw new IllegalStateException("Call start() before simulating packets.");
+        }
+        this.graph = graph;
+        this.alg = alg;
+        this.snapshot = graph.snapshot();
+        this.rand = new Random(seed);
+
+        //find the connection at each position of the snapshot,
+        //which keeps each host's connections in the same order
+        links = new Connection[snapshot.getEdgeCount()];
+        capacities = new int[links.length];
+        queues = new LinkQueue[links.length];
+        for(Host h : graph.getVertices()) {
+            int e = snapshot.edgeStart(h.getId());
+            for(Connection c : graph.getOutEdges(h)) {
+                links[e] = c;
+                capacities[e] = c.getCapacity();
+                if(capacities[e] != Connection.UNLIMITED) {
+                    queues[e] = new LinkQueue(c.getQueueLimit());
+                }
+                e++;
+            }
+        }
+    }
+
+    /**
+     *  Starts the simulation over: every queue is emptied and
+     *  its statistics forgotten, the pending events and packets
+     *  are thrown away and the time goes back to 0.
+     */
+    public void reset() {
+        for(LinkQueue queue : queues) {
+            if(queue != null) queue.reset();
+        }
+        events.clear();
+        numPackets = 0;
+        now = 0;
+        delivered = 0;
+        dropped = 0;
+        queueDrops = 0;
+        totalLatency = 0;
+        maxLatency = 0;
+        totalHops = 0;
+        eventsProcessed = 0;
+        runNanos = 0;
+    }
+
+    /**
+     *  Sends a packet.
+     *  @param source the host sending the packet
+     *  @param dest the host the packet is for
+     *  @param time the simulated time the packet is sent at
+     *  @return the id of the packet
+     *  @throws IllegalArgumentException if either host is not in the
+     *      network or the time is in the simulated past
+     */
+    public int send(Host source, Host dest, long time) {
+        if(!graph.containsVertex(source) || !graph.containsVertex(dest)) {
+            throw new IllegalArgumentException("Packets can only be sent between hosts in the network.");
+        }
+        if(time < now) {
+            throw new IllegalArgumentException("Cannot send a packet at " + time + ", it is already " + now + ".");
+        }
+        if(numPackets == packetDest.length) {
+            int capacity = numPackets * 2;
+            packetDest = Arrays.copyOf(packetDest, capacity);
+            packetSent = Arrays.copyOf(packetSent, capacity);
+            packetHops = Arrays.copyOf(packetHops, capacity);
+        }
+        int packet = numPackets++;
+        packetDest[packet] = dest.getId();
+        packetSent[packet] = time;
+        packetHops[packet] = 0;
+        events.schedule(time, packet, source.getId());
+        return packet;
+    }
+
+    /**
+     *  Runs the simulation until there are no events left.
+     *  @return the number of events handled
+     */
+    public long run() {
+        return run(Long.MAX_VALUE);
+    }
+
+    /**
+     *  Runs the simulation until the next event is later than
+     *  the given time (or there are no events left).
+     *  @param until the simulated time to stop at
+     *  @return the number of events handled
+     */
+    public long run(long until) {
+        long t0 = System.nanoTime();
+        long handled = 0;
+        while(!events.isEmpty() && events.peekTime() <= until) {
+            events.poll();
+            now = events.getTime();
+            if(events.getFirst() >= 0) {
+                arrive(events.getFirst(), events.getSecond());
+            }
+            else {
+                transmit(-1 - events.getFirst());
+            }
+            handled++;
+        }
+        if(until != Long.MAX_VALUE && until > now) {
+            now = until;
+        }
+        eventsProcessed += handled;
+        runNanos += System.nanoTime() - t0;
+        return handled;
+    }
+
+    /**
+     *  Handles a packet arriving at a host: it is delivered
+     *  if the host is its destination, otherwise it is sent
+     *  on to the next hop.
+     *  @param packet the packet id
+     *  @param host the host id
+     */
+    private void arrive(int packet, int host) {
+        int dest = packetDest[packet];
+        if(host == dest) {
+            long latency = now - packetSent[packet];
+            delivered++;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            totalHops += packetHops[packet];
+            return;
+        }
+
+        //a route can't be longer than the number of hosts,
+        //so a packet that has gone further is going in circles
+        int next = alg.nextHop(host, dest);
+        int e = (next == NextHopMatrix.NO_ROUTE) ? -1 : snapshot.linkPosition(host, next);
+        if(e < 0 || packetHops[packet] > snapshot.getVertexCount()) {
+            dropped++;
+            return;
+        }
+        packetHops[packet]++;
+
+        LinkQueue queue = queues[e];
+        if(queue == null) {
+            //unlimited capacity, nothing to wait for
+            events.schedule(now + snapshot.getWeight(e), packet, next);
+            return;
+        }
+        queue.recordArrival();
+        long idleSlots = 0;
+        if(queue.isEmpty() && !queue.isServiceScheduled()) {
+            idleSlots = (now - queue.getIdleSince()) * capacities[e];
+        }
+        if(links[e].getDropPolicy().shouldDrop(queue, idleSlots, rand)) {
+            queue.recordDrop();
+            queueDrops++;
+            dropped++;
+            return;
+        }
+        queue.add(packet);
+        if(!queue.isServiceScheduled()) {
+            queue.setServiceScheduled(true);
+            events.schedule(now, -1 - e, 0);
+        }
+    }
+
+    /**
+     *  Handles a connection sending: up to its capacity of
+     *  packets leave the front of its queue, and if any are
+     *  left it sends again one unit of time later.
+     *  @param e the position of the connection in the snapshot
+     */
+    private void transmit(int e) {
+        LinkQueue queue = queues[e];
+        int target = snapshot.getTarget(e);
+        int weight = snapshot.getWeight(e);
+        for(int i = 0; i < capacities[e] && !queue.isEmpty(); i++) {
+            events.schedule(now + weight, queue.poll(), target);
+        }
+        if(queue.isEmpty()) {
+            queue.setServiceScheduled(false);
+            queue.setIdleSince(now);
+        }
+        else {
+            events.schedule(now + 1, -1 - e, 0);
+        }
+    }
+
+    /**
+     *  Returns the current simulated time.
+     *  @return the time
+     */
+    public long getNow() {
+        return now;
+    }
+
+    /**
+     *  Returns the number of packets sent.
+     *  @return the number of packets
+     */
+    public int getSent() {
+        return numPackets;
+    }
+
+    /**
+     *  Returns the number of packets that reached their destination.
+     *  @return the number of packets delivered
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     *  Returns the number of packets that had no route
+     *  (or went in circles) and were dropped.
+     *  @return the number of packets dropped
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     *  Returns the number of packets dropped by connection queues.
+     *  @return the number of packets dropped because of congestion
+     */
+    public long getQueueDrops() {
+        return queueDrops;
+    }
+
+    /**
+     *  Returns how busy a connection was: the packets it sent
+     *  divided by the most it could have sent so far.
+     *  @param link the connection
+     *  @return the utilization between 0 and 1, or 0 for a connection with
+     *      unlimited capacity or one that wasn't in the network when the
+     *      simulator was made
+     */
+    public double getUtilization(Connection link) {
+        Host source = graph.getSource(link);
+        Host dest = graph.getDest(link);
+        if(source == null || dest == null) return 0;
+        int e = snapshot.linkPosition(source.getId(), dest.getId());
+        if(e < 0 || !links[e].equals(link)) return 0;
+        return getUtilization(e);
+    }
+
+    /**
+     *  Returns how busy the connection at a position was.
+     *  @param e the position of the connection in the snapshot
+     *  @return the utilization between 0 and 1, or 0 for a connection with unlimited capacity
+     */
+    private double getUtilization(int e) {
+        if(queues[e] == null || now == 0) return 0;
+        return (double) queues[e].getSent() / ((double) capacities[e] * now);
+    }
+
+    /**
+     *  Returns the utilization of the busiest connection.
+     *  @return the largest utilization
+     */
+    public double getMaxUtilization() {
+        double max = 0;
+        for(int e = 0; e < links.length; e++) {
+            max = Math.max(max, getUtilization(e));
+        }
+        return max;
+    }
+
+    /**
+     *  Returns the average utilization of the connections
+     *  with a limited capacity.
+     *  @return the average utilization, or 0 if no connection has a limited capacity
+     */
+    public double getAverageUtilization() {
+        double total = 0;
+        int limited = 0;
+        for(int e = 0; e < links.length; e++) {
+            if(queues[e] != null) {
+                total += getUtilization(e);
+                limited++;
+            }
+        }
+        return (limited == 0) ? 0 : total / limited;
+    }
+
+    /**
+     *  Returns the queue depth that the given fraction of packets
+     *  arriving at connections with a limited capacity found the
+     *  queue at or below.
+     *  @param fraction the percentile as a fraction (0.99 for the 99th)
+     *  @return the queue depth
+     */
+    public int getQueueDepthPercentile(double fraction) {
+        int maxLimit = 0;
+        for(LinkQueue queue : queues) {
+            if(queue != null) maxLimit = Math.max(maxLimit, queue.getLimit());
+        }
+        long[] counts = new long[maxLimit + 1];
+        for(LinkQueue queue : queues) {
+            if(queue == null) continue;
+            long[] linkCounts = queue.getDepthCounts();
+            for(int depth = 0; depth < linkCounts.length; depth++) {
+                counts[depth] += linkCounts[depth];
+            }
+        }
+        return LinkQueue.percentile(counts, fraction);
+    }
+
+    /**
+     *  Returns the number of packets still on their way.
+     *  @return the number of packets in flight
+     */
+    public long getInFlight() {
+        return numPackets - delivered - dropped;
+    }
+
+    /**
+     *  Returns the average simulated time a delivered packet took.
+     *  @return the average latency, or 0 if nothing was delivered
+     */
+    public double getAverageLatency() {
+        return (delivered == 0) ? 0 : (double) totalLatency / delivered;
+    }
+
+    /**
+     *  Returns the longest simulated time a delivered packet took.
+     *  @return the largest latency
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     *  Returns the average number of hops a delivered packet took.
+     *  @return the average number of hops, or 0 if nothing was delivered
+     */
+    public double getAverageHops() {
+        return (delivered == 0) ? 0 : (double) totalHops / delivered;
+    }
+
+    /**
+     *  Returns the number of events handled so far.
+     *  @return the number of events
+     */
+    public long getEventsProcessed() {
+        return eventsProcessed;
+    }
+
+    /**
+     *  Returns how many events were handled per second of real time.
+     *  @return the event rate, or 0 if nothing has run
+     */
+    public double getEventsPerSecond() {
+        return (runNanos == 0) ? 0 : eventsProcessed / (runNanos / 1e9);
+    }
+
+    /**
+     *  Returns a one line summary of the simulation.
+     *  @return the summary
+     */
+    public String report() {
+        return String.format("sent=%d delivered=%d dropped=%d (queues %d) in flight=%d avg latency=%.2f max latency=%d avg hops=%.2f"
+                             + " utilization avg=%.2f max=%.2f queue depth p50=%d p90=%d p99=%d events=%d events/sec=%.0f",
+                             numPackets, delivered, dropped, queueDrops, getInFlight(), getAverageLatency(),
+                             maxLatency, getAverageHops(), getAverageUtilization(), getMaxUtilization(),
+                             getQueueDepthPercentile(0.5), getQueueDepthPercentile(0.9), getQueueDepthPercentile(0.99),
+                             eventsProcessed, getEventsPerSecond());
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "PacketSimulator[time=" + now + ", " + report() + "]";
+    }
+}
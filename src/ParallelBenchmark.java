@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ *  Times routing with more than one thread: computing the
+ *  routing tables of one network in parallel, and running
+ *  independent seeded trials on a thread pool.
+ *
+ *  <p>Usage: java ParallelBenchmark [hosts...]
+ *  <br>or: java ParallelBenchmark trials [count] [hosts] [threads]
+ */
+class ParallelBenchmark {
+    /**
+     *  Times all-pairs routing (ThreeTenNetwork.start()) on a
+     *  network and returns the best of the timed runs.
+     *  @param graph the network
+     *  @param engine the shortest path engine to use
+     *  @param threads the number of threads to route with
+     *  @return the best wall clock time in nanoseconds
+     */
+    static long timeStart(Network graph, ThreeTenNetwork.Engine engine, int threads) {
+        final ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setColoring(false);
+        alg.reset(graph);
+        alg.setEngine(engine);
+        alg.setParallelism(threads);
+        return BenchmarkSupport.bestTime(new Runnable() {
+            public void run() {
+                alg.start();
+            }
+        });
+    }
+
+    /**
+     *  Times all-pairs routing on one network with one thread and
+     *  then with several, and prints the speedup: the sequential
+     *  time divided by the parallel time.
+     *  @param numNodes the number of hosts
+     *  @param engine the shortest path engine to use
+     *  @param threads the number of threads for the parallel run
+     */
+    static void benchStart(int numNodes, ThreeTenNetwork.Engine engine, int threads) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        long sequential = timeStart(graph, engine, 1);
+        long parallel = timeStart(graph, engine, threads);
+        BenchmarkSupport.print("start()", "%-6s hosts=%-7d edges=%-8d sequential=%10.3f ms  threads=%-3d parallel=%10.3f ms  speedup=%.2fx",
+                               engine, graph.getVertexCount(), graph.getEdgeCount(), sequential / 1e6,
+                               threads, parallel / 1e6, (double) sequential / parallel);
+    }
+
+    /**
+     *  Runs one seeded trial: generates a network in a context of
+     *  its own, computes the routes and routes random messages.
+     *  @param numNodes the number of hosts
+     *  @param seed the seed for the trial
+     *  @return a summary of the trial's results
+     */
+    static String runTrial(int numNodes, int seed) {
+        Random rand = new Random(seed);
+        Network graph = SimCLI.genGraph(numNodes, Math.min(1.0, BenchmarkSupport.AVG_OUT_DEGREE / numNodes), rand);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setColoring(false);
+        alg.reset(graph);
+        alg.start();
+        WorkloadDriver driver = new WorkloadDriver(graph, alg);
+        driver.run(TrafficMatrix.uniform(graph, BenchmarkSupport.MESSAGES, rand));
+        return graph.getEdgeCount() + " " + driver.getRouted() + " " + driver.getAverageCost();
+    }
+
+    /**
+     *  Runs independent seeded trials one after another and then
+     *  on a thread pool, and checks every trial gives the same
+     *  results both ways.
+     *  @param numTrials the number of trials
+     *  @param numNodes the number of hosts in each trial
+     *  @param threads the number of threads for the pool
+     */
+    static void benchTrials(int numTrials, final int numNodes, int threads) {
+        long t0 = System.nanoTime();
+        List<String> sequential = new ArrayList<>();
+        for(int i = 0; i < numTrials; i++) {
+            sequential.add(runTrial(numNodes, i));
+        }
+        long sequentialNanos = System.nanoTime() - t0;
+
+        List<Callable<String>> tasks = new ArrayList<>();
+        for(int i = 0; i < numTrials; i++) {
+            final int seed = i;
+            tasks.add(new Callable<String>() {
+                public String call() {
+                    return runTrial(numNodes, seed);
+                }
+            });
+        }
+        List<String> concurrent = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        t0 = System.nanoTime();
+        try {
+            for(Future<String> f : pool.invokeAll(tasks)) {
+                concurrent.add(f.get());
+            }
+        }
+        catch(InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("A trial failed.", e);
+        }
+        finally {
+            pool.shutdown();
+        }
+        long concurrentNanos = System.nanoTime() - t0;
+
+        int mismatches = 0;
+        for(int i = 0; i < numTrials; i++) {
+            if(!sequential.get(i).equals(concurrent.get(i))) mismatches++;
+        }
+        BenchmarkSupport.print("trials", "count=%-5d hosts=%-7d threads=%-3d sequential=%.1f ms  concurrent=%.1f ms  mismatches=%d",
+                               numTrials, numNodes, threads, sequentialNanos / 1e6, concurrentNanos / 1e6, mismatches);
+    }
+
+    /**
+     *  Runs the benchmark.
+     *  @param args what to measure and the sizes to try
+     */
+    public static void main(String[] args) {
+        String mode = (args.length > 0) ? args[0] : "";
+        if(mode.equals("trials")) {
+            benchTrials(BenchmarkSupport.intArg(args, 1, 200), BenchmarkSupport.intArg(args, 2, 100),
+                        BenchmarkSupport.intArg(args, 3, 8));
+        }
+        else {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            for(int n : BenchmarkSupport.sizes(args, 0, 100, 1000)) {
+                for(ThreeTenNetwork.Engine engine : ThreeTenNetwork.Engine.values()) {
+                    benchStart(n, engine, threads);
+                }
+            }
+        }
+    }
+}
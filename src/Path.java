@@ -0,0 +1,76 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *  A path through the network: the hosts a message visits,
+ *  from the source to the destination, and the total weight
+ *  of the connections between them.
+ */
+public class Path {
+    /**
+     *  The hosts on the path, source first.
+     */
+    private final List<Host> hops;
+
+    /**
+     *  The total weight of the path.
+     */
+    private final int cost;
+
+    /**
+     *  Makes a path.
+     *  @param hops the hosts on the path, source first
+     *  @param cost the total weight of the path
+     */
+    public Path(List<Host> hops, int cost) {
+        this.hops = Collections.unmodifiableList(hops);
+        this.cost = cost;
+    }
+
+    /**
+     *  Returns the hosts on the path.
+     *  @return the hosts, from the source to the destination
+     */
+    public List<Host> getHops() {
+        return hops;
+    }
+
+    /**
+     *  Returns the total weight of the path.
+     *  @return the cost
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     *  Returns the source of the path.
+     *  @return the first host
+     */
+    public Host getSource() {
+        return hops.get(0);
+    }
+
+    /**
+     *  Returns the destination of the path.
+     *  @return the last host
+     */
+    public Host getDest() {
+        return hops.get(hops.size() - 1);
+    }
+
+    /**
+     *  The string representation of a path is its
+     *  hosts joined by arrows, then its cost.
+     *  @return the string representation of the path
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(Host h : hops) {
+            if(sb.length() > 0) sb.append(" -> ");
+            sb.append(h);
+        }
+        sb.append(" (cost ").append(cost).append(")");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,410 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Hash table with open addressing (linear probing).
+ * Keys and values are kept in two parallel arrays whose length is a power of two,
+ * so there is no node or key-value pair allocated per entry and a lookup walks
+ * neighbouring array slots instead of following pointers.
+ * Removal shifts later entries of the probe run back instead of leaving tombstones.
+ * This has the same public API as HashTable (both are KeyValueTables) and can be used in its place.
+ * @param <K> generic type key
+ * @param <V> generic type value
+ */
+public class ProbingHashTable<K,V> implements KeyValueTable<K,V> {
+    /**
+     * Minimum number of slots in the hash table.
+     */
+    private static final int MIN_SLOTS = 2;
+    /**
+     * The table grows once more than this fraction of the slots are used.
+     */
+    private static final double MAX_LOAD = 0.75;
+    /**
+     * The keys, null for an empty slot.
+     */
+    private Object[] keys;
+    /**
+     * The values, in the same slots as their keys.
+     */
+    private Object[] values;
+    /**
+     * Number of key-value entries in the table.
+     */
+    private int numEntries = 0;
+    /**
+     * How far to shift a mixed hash code right to get a slot (32 - log2 of the number of slots).
+     */
+    private int shift;
+
+    /**
+     * Constructor of the class with the number of slots in the table.
+     * The number of slots is rounded up to a power of two.
+     * @param numSlots the given capacity
+     */
+    public ProbingHashTable(int numSlots) {
+        int capacity = slotsFor(numSlots);
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Round a requested number of slots up to a power of two (at least MIN_SLOTS).
+     * @param numSlots the requested number of slots
+     * @return the number of slots to use
+     */
+    private static int slotsFor(int numSlots) {
+        int capacity = MIN_SLOTS;
+        while (capacity < numSlots && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Find the first slot to probe for a key.
+     * The hash code is multiplied by 2^32 divided by the golden ratio and the top bits pick the slot
+     * (Fibonacci hashing), so sequential hash codes like ids are spread out instead of forming one long run.
+     * @param key the key
+     * @return the home slot of the key
+     */
+    private int home(Object key) {
+        return (key.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Find the slot holding the given key.
+     * @param key the key
+     * @return the slot of the key, or -1 if the key is not in the table
+     */
+    private int find(Object key) {
+        int mask = keys.length - 1;
+        for (int i = home(key); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The number of key-value entries in the table.
+     * @return the number of key-value entries in the table
+     */
+    @Override
+    public int size() {
+        return numEntries;
+    }
+
+    /**
+     * Get the number of slots in the table.
+     * @return the number of slots in the table
+     */
+    @Override
+    public int getNumSlots() {
+        return keys.length;
+    }
+
+    /**
+     * Get the load on the table.
+     * @return the load on the table
+     */
+    @Override
+    public double getLoad() {
+        return (double) numEntries / (double) keys.length;
+    }
+
+    /**
+     * Add a key-value pair to the table.
+     * If the load goes above 0.75 after adding an entry, the table doubles in size.
+     * @param key the key
+     * @param value the assiciated value
+     * @return true if the addition is successful, false otherwise
+     */
+    @Override
+    public boolean add(K key, V value) {
+        if (key == null || value == null) {
+            return false;
+        }
+        return putIfAbsent(key, value) == null;
+    }
+
+    /**
+     * Add a key-value pair to the table unless the key is already in the table.
+     * @param key the key
+     * @param value the assiciated value
+     * @return the value already associated with the key, or null if the pair was added (or key or value is null)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) {
+            return null;
+        }
+        // Walk the probe run once: stop at the key (duplicate) or at the first empty slot.
+        int mask = keys.length - 1;
+        int i = home(key);
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        numEntries++;
+        if (getLoad() > MAX_LOAD) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Rehashes the table to the given new size (rounded up to a power of two,
+     * and never so small that the entries would not fit).
+     * @param newSize the given new size
+     */
+    @Override
+    public void rehash(int newSize) {
+        int capacity = slotsFor(Math.max(newSize, (int) Math.ceil(numEntries / MAX_LOAD)));
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = home(oldKeys[j]);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Replace the value of the given key.
+     * @param key the key
+     * @param value the value
+     * @return true if successful, false otherwise
+     */
+    @Override
+    public boolean replace(K key, V value) {
+        if (key == null) {
+            return false;
+        }
+        int i = find(key);
+        if (i == -1) {
+            return false;
+        }
+        values[i] = value;
+        return true;
+    }
+
+    /**
+     * Remove the key-value pair.
+     * @param key the key
+     * @return true if the removal is successful, false otherwise
+     */
+    @Override
+    public boolean remove(K key) {
+        return removeAndGet(key) != null;
+    }
+
+    /**
+     * Remove the key-value pair.
+     * @param key the key
+     * @return the value that was associated with the key, or null if the key was not in the table
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V removeAndGet(K key) {
+        if (key == null) {
+            return null;
+        }
+        int i = find(key);
+        if (i == -1) {
+            return null;
+        }
+        V old = (V) values[i];
+        // Shift later entries of the probe run back so no entry is cut off from its home slot.
+        int mask = keys.length - 1;
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != null) {
+            int h = home(keys[j]);
+            // Move the entry at j into the hole if its home slot is not between the hole and j.
+            if (((j - h) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        numEntries--;
+        return old;
+    }
+
+    /**
+     * Check the key requested is in the table.
+     * @param key the requested key
+     * @return true if the key requested is in the table, false otherwise
+     */
+    @Override
+    public boolean contains(K key) {
+        return key != null && find(key) != -1;
+    }
+
+    /**
+     * Get the associated value of the given key.
+     * @param key the key
+     * @return null if the given key is not in the table, otherwise return the associated value
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        int i = find(key);
+        return (i == -1) ? null : (V) values[i];
+    }
+
+    /**
+     * Get a copy of the entries in the chained form HashTable uses internally.
+     * Changes to the copy do not affect this table.
+     * @return the entries as an array of lists of pairs
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ArrayOfListsOfPairs<K,V> getInternalTable() {
+        ArrayOfListsOfPairs<K,V> copy = new ArrayOfListsOfPairs<>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                copy.addPair((K) keys[i], (V) values[i]);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Get a string representation.
+     * @return a string representation
+     */
+    @Override
+    public String toString() {
+        return "ProbingHashTable[entries=" + numEntries + ", slots=" + keys.length + "]";
+    }
+
+    /**
+     * A key whose hash code is shared by a group of keys, so probe runs
+     * get long, wrap around the end of the table and mix several homes.
+     */
+    private static class CollidingKey {
+        /**
+         * The value of the key.
+         */
+        private final int value;
+
+        /**
+         * Makes a key.
+         * @param value the value of the key
+         */
+        CollidingKey(int value) {
+            this.value = value;
+        }
+
+        /**
+         * Keys in the same group of eight share a hash code.
+         * @return the hash code
+         */
+        @Override
+        public int hashCode() {
+            return value / 8;
+        }
+
+        /**
+         * Compares values.
+         * @param o the other object
+         * @return whether the keys are equal
+         */
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof CollidingKey) && ((CollidingKey) o).value == value;
+        }
+    }
+
+    /**
+     * Main method of the class which is used for testing.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        ProbingHashTable<Integer,String> table = new ProbingHashTable<>(2);
+        if (table.add(1, "one") && table.add(2, "two") && !table.add(1, "uno")
+            && table.get(1).equals("one") && table.remove(1) && table.get(2).equals("two") && table.size() == 1) {
+            System.out.println("Yay");
+        }
+
+        //random operations checked against java.util.HashMap
+        if (checkAgainstHashMap(new Random(1))) {
+            System.out.println("Yay");
+        }
+    }
+
+    /**
+     * Runs random adds, removes, replaces and rehashes on small tables of
+     * colliding keys and checks every key against a HashMap after each one.
+     * Removal shifting entries back and growing the table are where an
+     * entry can get cut off from its home slot, so both happen often.
+     * @param rand the random number generator
+     * @return false if the table ever disagreed with the map
+     */
+    private static boolean checkAgainstHashMap(Random rand) {
+        for (int trial = 0; trial < 50; trial++) {
+            ProbingHashTable<CollidingKey,Integer> table = new ProbingHashTable<>(2);
+            Map<CollidingKey,Integer> model = new HashMap<>();
+            int range = 8 + rand.nextInt(120);
+            for (int step = 0; step < 2000; step++) {
+                CollidingKey key = new CollidingKey(rand.nextInt(range));
+                Integer value = rand.nextInt(1000);
+                int op = rand.nextInt(10);
+                if (op < 4) {
+                    Integer old = table.putIfAbsent(key, value);
+                    Integer expected = model.get(key);
+                    if (expected == null) model.put(key, value);
+                    if (old == null ? expected != null : !old.equals(expected)) return false;
+                }
+                else if (op < 8) {
+                    Integer old = table.removeAndGet(key);
+                    Integer expected = model.remove(key);
+                    if (old == null ? expected != null : !old.equals(expected)) return false;
+                }
+                else if (op < 9) {
+                    boolean replaced = table.replace(key, value);
+                    if (replaced != model.containsKey(key)) return false;
+                    if (replaced) model.put(key, value);
+                }
+                else {
+                    table.rehash(rand.nextInt(2 * range));
+                }
+                if (table.size() != model.size() || table.getLoad() > MAX_LOAD) return false;
+                for (int k = 0; k < range; k++) {
+                    CollidingKey probe = new CollidingKey(k);
+                    Integer got = table.get(probe);
+                    Integer expected = model.get(probe);
+                    if (got == null ? expected != null : !got.equals(expected)) return false;
+                    if (table.contains(probe) != (expected != null)) return false;
+                }
+            }
+            if (table.getInternalTable().getAllPairs().size() != model.size()) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Random;
+
+/**
+ *  Random early detection (RED). A moving average of the queue
+ *  depth is kept. Below the minimum threshold nothing is dropped,
+ *  between the thresholds packets are dropped with a probability
+ *  rising linearly up to the maximum probability, and above the
+ *  maximum threshold (or when the queue is full) every packet is
+ *  dropped. Dropping some packets early keeps queues short
+ *  instead of letting them fill up. While a queue sits empty its
+ *  average decays as if an empty queue had been seen once for
+ *  every packet the connection could have sent, so a burst after
+ *  a quiet spell isn't judged by the congestion before it.
+ */
+public class RedPolicy implements DropPolicy {
+    /**
+     *  The average depth below which nothing is dropped.
+     */
+    private final double minThreshold;
+
+    /**
+     *  The average depth above which everything is dropped.
+     */
+    private final double maxThreshold;
+
+    /**
+     *  The drop probability at the maximum threshold.
+     */
+    private final double maxProbability;
+
+    /**
+     *  How much each new depth counts in the moving average.
+     */
+    private final double weight;
+
+    /**
+     *  Makes a RED policy.
+     *  @param minThreshold the average depth where dropping starts
+     *  @param maxThreshold the average depth where everything is dropped
+     *  @param maxProbability the drop probability just below the maximum threshold
+     *  @param weight how much each new depth counts in the moving average (between 0 and 1)
+     *  @throws IllegalArgumentException if the thresholds are out of order
+     *      or the probability or weight is not between 0 and 1
+     */
+    public RedPolicy(double minThreshold, double maxThreshold, double maxProbability, double weight) {
+        if(minThreshold < 0 || maxThreshold <= minThreshold) {
+            throw new IllegalArgumentException("Thresholds must satisfy 0 <= min < max.");
+        }
+        if(maxProbability < 0 || maxProbability > 1 || weight <= 0 || weight > 1) {
+            throw new IllegalArgumentException("Probability and weight must be between 0 and 1.");
+        }
+        this.minThreshold = minThreshold;
+        this.maxThreshold = maxThreshold;
+        this.maxProbability = maxProbability;
+        this.weight = weight;
+    }
+
+    /**
+     *  Makes a RED policy with the usual settings for a queue:
+     *  dropping starts at a quarter full, everything is dropped
+     *  at three quarters, a 10% drop probability in between and
+     *  a moving average weight of 0.002.
+     *  @param limit the most packets the queue can hold
+     *  @return the policy
+     */
+    public static RedPolicy forLimit(int limit) {
+        return new RedPolicy(limit / 4.0, limit * 3 / 4.0, 0.1, 0.002);
+    }
+
+    /**
+     *  Updates the average depth and decides whether to drop.
+     *  @param queue the queue the packet arrived at
+     *  @param idleSlots how many packets the connection could have
+     *      sent while the queue sat empty before this packet arrived
+     *  @param rand the simulation's random number generator
+     *  @return true to drop the packet
+     */
+    public boolean shouldDrop(LinkQueue queue, long idleSlots, Random rand) {
+        queue.decayAverageDepth(weight, idleSlots);
+        double avg = queue.updateAverageDepth(weight);
+        if(queue.isFull() || avg >= maxThreshold) return true;
+        if(avg < minThreshold) return false;
+        double p = maxProbability * (avg - minThreshold) / (maxThreshold - minThreshold);
+        return rand.nextDouble() < p;
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "RED(min=" + minThreshold + ", max=" + maxThreshold + ", p=" + maxProbability + ", w=" + weight + ")";
+    }
+}
@@ -2,8 +2,24 @@
  *  A routing table for a host in the network. This
  *  is just a hash table for mapping Host(dest) to
  *  Host(next hop), but with a special toString().
+ *
+ *  <p>Once the routes have been computed the table is a
+ *  view of its host's row of a NextHopMatrix, so reads and
+ *  writes go to the matrix instead of the hash table.
  */
 public class RoutingTable extends HashTable<Host,Host> {
+    /**
+     *  The matrix this table is a view of, null if
+     *  the table is still a plain hash table.
+     */
+    private NextHopMatrix matrix = null;
+    
+    /**
+     *  The id of the host this table belongs to
+     *  (the row of the matrix).
+     */
+    private int source = -1;
+    
     /**
      *  Starts with a hash table of size 2.
      */
@@ -11,6 +27,156 @@ public class RoutingTable extends HashTable<Host,Host> {
         super(2);
     }
     
+    /**
+     *  Makes this table a view of a source's row of a matrix.
+     *  The row is emptied and any routes in the table before
+     *  are dropped.
+     *  @param matrix the matrix to view
+     *  @param source the id of the host this table belongs to
+     */
+    public void attach(NextHopMatrix matrix, int source) {
+        matrix.clearRow(source);
+        this.matrix = matrix;
+        this.source = source;
+        this.storage = new ArrayOfListsOfPairs<Host,Host>(2);
+    }
+    
+    /**
+     *  Returns the matrix this table is a view of.
+     *  @return the matrix, or null if the table is a plain hash table
+     */
+    public NextHopMatrix getMatrix() {
+        return matrix;
+    }
+    
+    /**
+     *  The number of routes in the table.
+     *  @return the number of routes
+     */
+    @Override
+    public int size() {
+        if(matrix == null) return super.size();
+        return matrix.countRoutes(source);
+    }
+    
+    /**
+     *  Get the number of slots in the table.
+     *  @return the number of slots in the table
+     */
+    @Override
+    public int getNumSlots() {
+        if(matrix == null) return super.getNumSlots();
+        return matrix.getIdBound();
+    }
+    
+    /**
+     *  Get the load on the table.
+     *  @return the load on the table
+     */
+    @Override
+    public double getLoad() {
+        if(matrix == null) return super.getLoad();
+        return (double) size() / (double) getNumSlots();
+    }
+    
+    /**
+     *  Adds a route unless there is already a route to the destination.
+     *  @param dest the destination
+     *  @param nextHop the next hop
+     *  @return the next hop already in the table, or null if the route was added
+     */
+    @Override
+    public Host putIfAbsent(Host dest, Host nextHop) {
+        if(matrix == null) return super.putIfAbsent(dest, nextHop);
+        if(dest == null || nextHop == null) return null;
+        Host existing = get(dest);
+        if(existing != null) return existing;
+        matrix.setNextHop(source, dest.getId(), nextHop.getId());
+        return null;
+    }
+    
+    /**
+     *  Rehashes the table. Does nothing once the
+     *  table is a view of a matrix.
+     *  @param newSize the given new size
+     */
+    @Override
+    public void rehash(int newSize) {
+        if(matrix == null) super.rehash(newSize);
+    }
+    
+    /**
+     *  Replaces the next hop to a destination.
+     *  @param dest the destination
+     *  @param nextHop the new next hop
+     *  @return true if there was a route to replace
+     */
+    @Override
+    public boolean replace(Host dest, Host nextHop) {
+        if(matrix == null) return super.replace(dest, nextHop);
+        if(dest == null || nextHop == null || !contains(dest)) return false;
+        matrix.setNextHop(source, dest.getId(), nextHop.getId());
+        return true;
+    }
+    
+    /**
+     *  Removes the route to a destination.
+     *  @param dest the destination
+     *  @return the next hop that was in the table, or null if there was no route
+     */
+    @Override
+    public Host removeAndGet(Host dest) {
+        if(matrix == null) return super.removeAndGet(dest);
+        Host old = get(dest);
+        if(old != null) {
+            matrix.setNextHop(source, dest.getId(), NextHopMatrix.NO_ROUTE);
+        }
+        return old;
+    }
+    
+    /**
+     *  Checks whether there is a route to a destination.
+     *  @param dest the destination
+     *  @return true if there is a route
+     */
+    @Override
+    public boolean contains(Host dest) {
+        if(matrix == null) return super.contains(dest);
+        return dest != null && matrix.getNextHop(source, dest.getId()) != NextHopMatrix.NO_ROUTE;
+    }
+    
+    /**
+     *  Returns the next hop to a destination.
+     *  @param dest the destination
+     *  @return the next hop, or null if there is no route
+     */
+    @Override
+    public Host get(Host dest) {
+        if(matrix == null) return super.get(dest);
+        if(dest == null) return null;
+        int next = matrix.getNextHop(source, dest.getId());
+        return (next == NextHopMatrix.NO_ROUTE) ? null : matrix.getHost(next);
+    }
+    
+    /**
+     *  Get the routes in the chained form HashTable uses. Once
+     *  the table is a view of a matrix this is a copy, and
+     *  changing it does not change the routes.
+     *  @return the routes as an array of lists of pairs
+     */
+    @Override
+    public ArrayOfListsOfPairs<Host,Host> getInternalTable() {
+        if(matrix == null) return super.getInternalTable();
+        ArrayOfListsOfPairs<Host,Host> copy = new ArrayOfListsOfPairs<>(Math.max(getNumSlots(), 2));
+        for(int dest = 0; dest < matrix.getIdBound(); dest++) {
+            int next = matrix.getNextHop(source, dest);
+            if(next != NextHopMatrix.NO_ROUTE && matrix.getHost(dest) != null) {
+                copy.addPair(matrix.getHost(dest), matrix.getHost(next));
+            }
+        }
+        return copy;
+    }
+    
     /**
      *  Produces the HTML for display of a routing table
      *  in the simulation.
@@ -22,7 +188,7 @@ public class RoutingTable extends HashTable<Host,Host> {
         StringBuilder sb = new StringBuilder();
         sb.append("<br />Routing Table: <table border=0>");
         sb.append("<tr><th>To</th><th>Next Hop</th></tr>");
-        for(KeyValuePair<Host,Host> pair : storage.getAllPairs()) {
+        for(KeyValuePair<Host,Host> pair : getInternalTable().getAllPairs()) {
             //sb.append("\n");
             sb.append("<tr><td>");
             sb.append(pair.getKey());
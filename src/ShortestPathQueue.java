@@ -0,0 +1,35 @@
+/**
+ *  The queue Dijkstra's algorithm uses to pick the next
+ *  closest host. Entries are host ids with an integer key
+ *  (the current distance). Ties between equal keys are
+ *  broken by the smaller id.
+ */
+public interface ShortestPathQueue {
+    /**
+     *  Adds an id to the queue.
+     *  @param id the id to add
+     *  @param key the key of the id
+     */
+    void add(int id, int key);
+
+    /**
+     *  Lowers the key of an id that is already in the queue.
+     *  @param id the id
+     *  @param key the new key, which may not be larger than the current one
+     */
+    void decreaseKey(int id, int key);
+
+    /**
+     *  Removes and returns the id with the smallest key. Once only
+     *  ids with a key of Integer.MAX_VALUE (unreachable) are left,
+     *  a queue may either return one of them or -1.
+     *  @return the id with the smallest key, or -1 if there is none
+     */
+    int poll();
+
+    /**
+     *  Checks whether the queue is empty.
+     *  @return true if there are no ids in the queue
+     */
+    boolean isEmpty();
+}
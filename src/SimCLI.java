@@ -0,0 +1,143 @@
+import edu.uci.ics.jung.algorithms.generators.random.ErdosRenyiGeneratorDirected;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ *  Runs the simulation without the GUI: generates a network
+ *  the same way SimGUI does, computes every routing table,
+ *  routes messages between random hosts and prints the timings
+ *  and routing statistics as JSON.
+ *
+ *  <p>Routing is done with coloring turned off, so no AWT or
+ *  Swing classes are loaded and this runs on machines without
+ *  a display.
+ *
+ *  <p>Usage: java SimCLI [numNodes] [connectProb] [seed] [messages]
+ */
+public class SimCLI {
+    /**
+     *  The number of hosts when none is given.
+     */
+    private static final int DEFAULT_NODES = 6;
+
+    /**
+     *  The probability of a connection when none is given.
+     */
+    private static final double DEFAULT_PROB = 0.4;
+
+    /**
+     *  The number of messages routed when none is given.
+     */
+    private static final int DEFAULT_MESSAGES = 1000;
+
+    /**
+     *  Generates a network with the same generator and seeding
+     *  as SimGUI, so the same arguments give the same network.
+     *  The network gets a context of its own, so networks can be
+     *  generated on several threads at once.
+     *  @param numNodes the number of hosts
+     *  @param prob the probability of a connection between two hosts
+     *  @param rand the random number generator the generator's seed comes from
+     *  @return the generated network
+     */
+    static Network genGraph(int numNodes, double prob, Random rand) {
+        SimulationContext context = new SimulationContext();
+        ErdosRenyiGeneratorDirected<Host,Connection> gen = new ErdosRenyiGeneratorDirected<Host,Connection>(
+                                                                                                            context.getNetworkFactory(),
+                                                                                                            context.getHostFactory(), context.getConnectionFactory(),
+                                                                                                            numNodes, prob
+                                                                                                           );
+        gen.setSeed(rand.nextInt());
+        return (Network) gen.create();
+    }
+
+    /**
+     *  Generates a network, routes messages through it and
+     *  returns the results.
+     *  @param numNodes the number of hosts
+     *  @param prob the probability of a connection between two hosts
+     *  @param seed the seed for the random number generator
+     *  @param messages the number of messages to route
+     *  @return the results as a JSON object
+     */
+    static String run(int numNodes, double prob, int seed, int messages) {
+        Random rand = new Random(seed);
+
+        long t0 = System.nanoTime();
+        Network graph = genGraph(numNodes, prob, rand);
+        long generateNanos = System.nanoTime() - t0;
+
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setColoring(false);
+        alg.reset(graph);
+        t0 = System.nanoTime();
+        alg.start();
+        long startNanos = System.nanoTime() - t0;
+
+        WorkloadDriver driver = new WorkloadDriver(graph, alg);
+        if(messages > 0 && graph.getVertexCount() > 0) {
+            driver.run(TrafficMatrix.uniform(graph, messages, rand));
+        }
+
+        return String.format(Locale.ROOT,
+                             "{\"hosts\": %d, \"connections\": %d, \"prob\": %s, \"seed\": %d, \"engine\": \"%s\","
+                             + " \"generateMs\": %.3f, \"startMs\": %.3f, \"messages\": %d, \"demands\": %d,"
+                             + " \"routed\": %d, \"unroutable\": %d, \"demandsPerSecond\": %.0f,"
+                             + " \"messagesPerSecond\": %.0f, \"avgHops\": %.3f,"
+                             + " \"hopsP50\": %d, \"hopsP90\": %d, \"hopsP99\": %d, \"maxHops\": %d, \"avgCost\": %.3f}",
+                             graph.getVertexCount(), graph.getEdgeCount(), Double.toString(prob), seed,
+                             alg.getActiveEngine(), generateNanos / 1e6, startNanos / 1e6, messages,
+                             driver.getDemands(), driver.getRouted(), driver.getUnroutable(),
+                             driver.getDemandsPerSecond(), driver.getMessagesPerSecond(),
+                             driver.getAverageHops(), driver.getHopPercentile(0.5), driver.getHopPercentile(0.9),
+                             driver.getHopPercentile(0.99), driver.getMaxHops(), driver.getAverageCost());
+    }
+
+    /**
+     *  Runs the simulation and prints the results.
+     *  @param args [0] = the number of hosts, [1] = the probability of a connection,
+     *      [2] = the seed, [3] = the number of messages to route
+     */
+    public static void main(String[] args) {
+        if(args.length > 4) {
+            usage(null);
+        }
+        int numNodes = DEFAULT_NODES;
+        double prob = DEFAULT_PROB;
+        int seed = 0;
+        int messages = DEFAULT_MESSAGES;
+        try {
+            if(args.length > 0) numNodes = Integer.parseInt(args[0]);
+            if(args.length > 1) prob = Double.parseDouble(args[1]);
+            if(args.length > 2) seed = Integer.parseInt(args[2]);
+            if(args.length > 3) messages = Integer.parseInt(args[3]);
+        }
+        catch(NumberFormatException e) {
+            usage("Bad argument: " + e.getMessage());
+        }
+        if(numNodes < 1) {
+            usage("Bad argument: the number of hosts must be at least 1, not " + numNodes);
+        }
+        if(!(prob >= 0 && prob <= 1)) {
+            usage("Bad argument: the probability must be between 0 and 1, not " + prob);
+        }
+        if(messages < 0) {
+            usage("Bad argument: the number of messages can't be negative, not " + messages);
+        }
+        System.out.println(run(numNodes, prob, seed, messages));
+    }
+
+    /**
+     *  Prints what went wrong (if anything) and how to call
+     *  the program, then exits.
+     *  @param problem what was wrong with the arguments, or null
+     */
+    private static void usage(String problem) {
+        if(problem != null) {
+            System.err.println(problem);
+        }
+        System.err.println("Call with: java SimCLI [numNodes] [connectProb] [seed] [messages]");
+        System.exit(1);
+    }
+}
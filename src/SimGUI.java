@@ -94,6 +94,13 @@ class SimGUI {
      */
     private final Random rand;
     
+    /**
+     *  The random number generator for connection weights.
+     *  It is kept across resets, so each new graph gets
+     *  new weights.
+     */
+    private final Random weights = new Random(SimulationContext.DEFAULT_SEED);
+    
     /**
      *  The probability of an edge existing between two nodes.
      */
@@ -288,7 +295,7 @@ class SimGUI {
         );
         
         //Add user interactions
-        gm = new EditingModalGraphMouse<>(context, Host.getFactory(), Connection.getFactory());
+        gm = new EditingModalGraphMouse<>(context, graph.getContext().getHostFactory(), graph.getContext().getConnectionFactory());
         gm.setMode(ModalGraphMouse.Mode.EDITING);
         visServer.setGraphMouse(gm);
         
@@ -474,11 +481,12 @@ class SimGUI {
         int nodeCount = 0;
         int edgeCount = 0;
         
-        Factory<Host> nodeFactory = Host.getFactory();
-        Factory<Connection> edgeFactory = Connection.getFactory();
+        SimulationContext simContext = new SimulationContext(weights);
+        Factory<Host> nodeFactory = simContext.getHostFactory();
+        Factory<Connection> edgeFactory = simContext.getConnectionFactory();
         
         ErdosRenyiGeneratorDirected<Host,Connection> gen = new ErdosRenyiGeneratorDirected<Host,Connection>(
-                                                                                                            Network.getFactory(),
+                                                                                                            simContext.getNetworkFactory(),
                                                                                                             nodeFactory, edgeFactory,
                                                                                                             this.numNodes,this.prob
                                                                                                            );
@@ -492,8 +500,6 @@ class SimGUI {
     public void resetAlg() {
         if(alg == null) alg = new ThreeTenNetwork();
         
-        Host.LAST_ID = -1;
-        Connection.LAST_ID = -1;
         genGraph();
         alg.reset(graph);
         
@@ -0,0 +1,163 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.Random;
+
+/**
+ *  Everything one simulation needs to make hosts and connections:
+ *  the next host and connection ids, and the random numbers the
+ *  connection weights come from. Each network has its own context,
+ *  so simulations in the same JVM (for example trials running on
+ *  a thread pool) don't share ids or random numbers, and the same
+ *  seed always gives the same weights.
+ *
+ *  <p>A context is not thread safe by itself; each simulation
+ *  should make its hosts and connections from one thread.
+ */
+public class SimulationContext {
+    /**
+     *  The seed weights come from unless told otherwise.
+     *  Do not change it, routes in existing networks depend on it!
+     */
+    public static final long DEFAULT_SEED = 0;
+
+    /**
+     *  The last id given to a host.
+     */
+    private int lastHostId = -1;
+
+    /**
+     *  The last id given to a connection.
+     */
+    private int lastConnectionId = -1;
+
+    /**
+     *  The random number generator for connection weights.
+     */
+    private final Random rand;
+
+    /**
+     *  Makes a context whose weights come from the default seed.
+     */
+    public SimulationContext() {
+        this(DEFAULT_SEED);
+    }
+
+    /**
+     *  Makes a context whose weights come from the given seed.
+     *  @param seed the seed for connection weights
+     */
+    public SimulationContext(long seed) {
+        this(new Random(seed));
+    }
+
+    /**
+     *  Makes a context whose weights come from the given random
+     *  number generator. Sharing a generator between contexts
+     *  keeps the weights going on from one network to the next.
+     *  @param rand the random number generator for connection weights
+     *  @throws IllegalArgumentException if the generator is null
+     */
+    public SimulationContext(Random rand) {
+        if(rand == null) {
+            throw new IllegalArgumentException("Need a random number generator.");
+        }
+        this.rand = rand;
+    }
+
+    /**
+     *  Returns the last id given to a host.
+     *  @return the last host id, or -1 if no host has been made
+     */
+    public int getLastHostId() {
+        return lastHostId;
+    }
+
+    /**
+     *  Returns the last id given to a connection.
+     *  @return the last connection id, or -1 if no connection has been made
+     */
+    public int getLastConnectionId() {
+        return lastConnectionId;
+    }
+
+    /**
+     *  Makes a host with the next id.
+     *  @return the new host
+     */
+    public Host newHost() {
+        return new Host(++lastHostId);
+    }
+
+    /**
+     *  Makes a connection with the next id and a random
+     *  weight between 1 and 10.
+     *  @return the new connection
+     */
+    public Connection newConnection() {
+        int id = ++lastConnectionId;
+        return new Connection(id, rand.nextInt(10)+1);
+    }
+
+    /**
+     *  Makes a connection with the next id and the given
+     *  weight, for networks loaded from a file or arrays.
+     *  @param weight the weight of the connection
+     *  @return the new connection
+     *  @throws IllegalArgumentException if the weight is less than 1
+     */
+    public Connection newConnection(int weight) {
+        if(weight < 1) {
+            throw new IllegalArgumentException("Connection weights must be at least 1.");
+        }
+        return new Connection(++lastConnectionId, weight);
+    }
+
+    /**
+     *  This is a code pattern called a "factory".
+     *  A factory for hosts makes instances of hosts!
+     *  @return a factory that makes hosts in this context
+     */
+    public Factory<Host> getHostFactory() {
+        return new Factory<Host>() {
+            public Host create() {
+                return newHost();
+            }
+        };
+    }
+
+    /**
+     *  A factory for connections makes instances of
+     *  connections!
+     *  @return a factory that makes connections in this context
+     */
+    public Factory<Connection> getConnectionFactory() {
+        return new Factory<Connection>() {
+            public Connection create() {
+                return newConnection();
+            }
+        };
+    }
+
+    /**
+     *  A factory for networks that use this context, for
+     *  graph generators that make the network themselves.
+     *  @return a factory that makes networks in this context
+     */
+    public Factory<Graph<Host,Connection>> getNetworkFactory() {
+        return new Factory<Graph<Host,Connection>>() {
+            public Graph<Host,Connection> create() {
+                return new Network(SimulationContext.this);
+            }
+        };
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "SimulationContext[hosts=" + (lastHostId + 1) + ", connections=" + (lastConnectionId + 1) + "]";
+    }
+}
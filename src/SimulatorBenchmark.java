@@ -0,0 +1,217 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *  Times sending traffic over routed networks: the packet
+ *  simulator with and without congestion, routing traffic
+ *  matrices in bulk and following routes hop by hop.
+ *
+ *  <p>Usage: java SimulatorBenchmark [hosts] [packets]
+ *  <br>or: java SimulatorBenchmark congestion [hosts] [packets] [window]
+ *  <br>or: java SimulatorBenchmark workload [hosts] [messages]
+ *  <br>or: java SimulatorBenchmark hops [hosts] [degree] [messages]
+ */
+class SimulatorBenchmark {
+    /**
+     *  Simulates random packets between random pairs of hosts
+     *  and prints the simulator's report.
+     *  @param numNodes the number of hosts
+     *  @param numPackets the number of packets to send
+     */
+    static void benchSimulation(int numNodes, int numPackets) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.reset(graph);
+        alg.start();
+
+        //send the packets over a window short enough that
+        //thousands of them are in flight at once
+        Random rand = new Random(6);
+        long window = Math.max(1, numPackets / 100);
+        for(int round = 0; round <= BenchmarkSupport.WARMUP_RUNS; round++) {
+            PacketSimulator sim = new PacketSimulator(graph, alg);
+            sim.reset();
+            for(int i = 0; i < numPackets; i++) {
+                sim.send(graph.getHost(rand.nextInt(numNodes)), graph.getHost(rand.nextInt(numNodes)),
+                         (long) (rand.nextDouble() * window));
+            }
+            sim.run();
+            if(round == BenchmarkSupport.WARMUP_RUNS) {
+                BenchmarkSupport.print("sim", "hosts=%-7d edges=%-8d %s",
+                                       graph.getVertexCount(), graph.getEdgeCount(), sim.report());
+            }
+        }
+    }
+
+    /**
+     *  Simulates more traffic than the connections can carry,
+     *  once with drop-tail queues and once with RED, and prints
+     *  the reports.
+     *  @param numNodes the number of hosts
+     *  @param numPackets the number of packets to send
+     *  @param window how many units of time the packets are sent over
+     */
+    static void benchCongestion(int numNodes, int numPackets, long window) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.reset(graph);
+        alg.start();
+
+        DropPolicy[] policies = {new DropTailPolicy(), RedPolicy.forLimit(Connection.DEFAULT_QUEUE_LIMIT)};
+        for(DropPolicy policy : policies) {
+            for(Connection c : graph.getEdges()) {
+                c.setCapacity(1);
+                c.setDropPolicy(policy);
+            }
+            Random rand = new Random(7);
+            PacketSimulator sim = new PacketSimulator(graph, alg);
+            sim.reset();
+            for(int i = 0; i < numPackets; i++) {
+                sim.send(graph.getHost(rand.nextInt(numNodes)), graph.getHost(rand.nextInt(numNodes)),
+                         (long) (rand.nextDouble() * window));
+            }
+            sim.run();
+            BenchmarkSupport.print("congest", "%-9s hosts=%-7d %s", policy.toString().replaceAll("\\(.*", ""),
+                                   graph.getVertexCount(), sim.report());
+        }
+    }
+
+    /**
+     *  Routes uniform, gravity, hotspot and replayed (written to
+     *  CSV and read back) traffic matrices in bulk and prints the
+     *  throughput and path lengths of each.
+     *  @param numNodes the number of hosts
+     *  @param numMessages the number of messages in each matrix
+     */
+    static void benchWorkload(int numNodes, int numMessages) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.reset(graph);
+        alg.start();
+
+        Random rand = new Random(7);
+        TrafficMatrix uniform = TrafficMatrix.uniform(graph, numMessages, rand);
+        TrafficMatrix replayed;
+        try {
+            File csv = File.createTempFile("traffic", ".csv");
+            csv.deleteOnExit();
+            try(Writer out = new FileWriter(csv)) {
+                uniform.writeCsv(out);
+            }
+            try(Reader in = new FileReader(csv)) {
+                replayed = TrafficMatrix.readCsv(graph, in);
+            }
+        }
+        catch(IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        String[] names = {"uniform", "gravity", "hotspot", "csv"};
+        TrafficMatrix[] matrices = {uniform, TrafficMatrix.gravity(graph, numMessages, rand),
+                                    TrafficMatrix.hotspot(graph, numMessages, 10, 0.5, rand), replayed};
+        WorkloadDriver driver = new WorkloadDriver(graph, alg);
+        for(int i = 0; i < matrices.length; i++) {
+            for(int j = 0; j < BenchmarkSupport.WARMUP_RUNS; j++) {
+                driver.run(matrices[i]);
+            }
+            driver.reset();
+            for(int j = 0; j < BenchmarkSupport.TIMED_RUNS; j++) {
+                driver.run(matrices[i]);
+            }
+            BenchmarkSupport.print("workload", "%-7s hosts=%-7d %s", names[i], graph.getVertexCount(), driver.report());
+        }
+    }
+
+    /**
+     *  Times routing messages across a network the way route()
+     *  does when coloring: every hop follows the next hop and looks
+     *  up the connection it crosses with findEdge(). Prints how
+     *  long building the network took (addEdge() looks for a
+     *  duplicate on every insert), the time per hop and
+     *  the time per message.
+     *  @param numNodes the number of hosts
+     *  @param avgDegree the average number of connections leaving a host
+     *  @param numMessages the number of messages to route
+     */
+    static void benchHops(int numNodes, int avgDegree, int numMessages) {
+        long t0 = System.nanoTime();
+        Network graph = BenchmarkSupport.genSparseGraph(numNodes, numNodes * avgDegree, 0);
+        long buildNanos = System.nanoTime() - t0;
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setColoring(false);
+        alg.reset(graph);
+        alg.start();
+
+        Random rand = new Random(8);
+        int[] sources = new int[numMessages];
+        int[] dests = new int[numMessages];
+        for(int i = 0; i < numMessages; i++) {
+            sources[i] = rand.nextInt(numNodes);
+            dests[i] = rand.nextInt(numNodes);
+        }
+        long[] messageNanos = new long[numMessages];
+        long hops = 0;
+        long lookupNanos = 0;
+        for(int run = 0; run <= BenchmarkSupport.WARMUP_RUNS; run++) {
+            hops = 0;
+            t0 = System.nanoTime();
+            for(int i = 0; i < numMessages; i++) {
+                long m0 = System.nanoTime();
+                Host current = graph.getHost(sources[i]);
+                while(current.getId() != dests[i]) {
+                    int next = alg.nextHop(current.getId(), dests[i]);
+                    if(next == NextHopMatrix.NO_ROUTE) break;
+                    Host nextHost = graph.getHost(next);
+                    BenchmarkSupport.sink += graph.findEdge(current, nextHost).getWeight();
+                    current = nextHost;
+                    hops++;
+                }
+                messageNanos[i] = System.nanoTime() - m0;
+            }
+            lookupNanos = System.nanoTime() - t0;
+        }
+        Arrays.sort(messageNanos);
+        BenchmarkSupport.print("hops", "hosts=%-7d edges=%-9d build=%.0f ms  hops=%-8d per hop=%.1f ns"
+                               + "  message p50=%.2f us p99=%.2f us max=%.2f us",
+                               graph.getVertexCount(), graph.getEdgeCount(), buildNanos / 1e6, hops,
+                               (double) lookupNanos / Math.max(1, hops),
+                               messageNanos[numMessages / 2] / 1e3, messageNanos[(int) (numMessages * 0.99)] / 1e3,
+                               messageNanos[numMessages - 1] / 1e3);
+    }
+
+    /**
+     *  Runs the benchmark.
+     *  @param args what to measure and the sizes to try
+     */
+    public static void main(String[] args) {
+        String mode = (args.length > 0) ? args[0] : "";
+        if(mode.equals("congestion")) {
+            benchCongestion(BenchmarkSupport.intArg(args, 1, 1000), BenchmarkSupport.intArg(args, 2, 1000000),
+                            BenchmarkSupport.intArg(args, 3, 4000));
+        }
+        else if(mode.equals("workload")) {
+            benchWorkload(BenchmarkSupport.intArg(args, 1, 1000), BenchmarkSupport.intArg(args, 2, 200000));
+        }
+        else if(mode.equals("hops")) {
+            int numNodes = BenchmarkSupport.intArg(args, 1, 10000);
+            int numMessages = BenchmarkSupport.intArg(args, 3, 100000);
+            if(args.length > 2) {
+                benchHops(numNodes, Integer.parseInt(args[2]), numMessages);
+            }
+            else {
+                benchHops(numNodes, 8, numMessages);
+                benchHops(numNodes, 128, numMessages);
+            }
+        }
+        else {
+            benchSimulation(BenchmarkSupport.intArg(args, 0, 1000), BenchmarkSupport.intArg(args, 1, 1000000));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+import org.apache.commons.collections15.Factory;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures what storing networks and routes costs: the graph
+ *  operations, the memory the adjacency structures and routing
+ *  tables take, loading a network in bulk and the garbage
+ *  walking the graph makes.
+ *
+ *  <p>Usage: java StorageBenchmark [hosts...]
+ *  <br>or: java StorageBenchmark ops [hosts...]
+ *  <br>or: java StorageBenchmark bulk [hosts] [connections]
+ *  <br>or: java StorageBenchmark gc [hosts...]
+ *  <br>or: java StorageBenchmark routes [hosts...]
+ */
+class StorageBenchmark {
+    /**
+     *  Prints how much memory the network's adjacency
+     *  structures use.
+     *  @param numNodes the number of hosts
+     */
+    static void reportMemory(int numNodes) {
+        Network graph = BenchmarkSupport.genGraph(numNodes, 0);
+        BenchmarkSupport.print("memory", "hosts=%-7d edges=%-8d adjacency=%d B  reverse index=%d B  snapshot=%d B",
+                               graph.getVertexCount(), graph.getEdgeCount(),
+                               graph.getInternalTable().memoryFootprint(),
+                               graph.getReverseIndexFootprint(),
+                               graph.snapshot().memoryFootprint());
+    }
+
+    /**
+     *  Times the graph operations everything else is built on:
+     *  adding connections between random pairs of hosts, looking
+     *  connections up (half of the lookups find one) and walking
+     *  the out and in edges of every host.
+     *  @param numNodes the number of hosts
+     */
+    static void benchOps(int numNodes) {
+        int numEdges = (int) (numNodes * BenchmarkSupport.AVG_OUT_DEGREE);
+        Random rand = new Random(1);
+        long addNanos = 0;
+        for(int run = 0; run < BenchmarkSupport.WARMUP_RUNS + BenchmarkSupport.TIMED_RUNS; run++) {
+            SimulationContext context = new SimulationContext();
+            Factory<Host> hostFactory = context.getHostFactory();
+            Network graph = new Network(context);
+            Host[] hosts = new Host[numNodes];
+            for(int i = 0; i < numNodes; i++) {
+                hosts[i] = hostFactory.create();
+                graph.addVertex(hosts[i]);
+            }
+            Connection[] edges = new Connection[numEdges];
+            Host[] from = new Host[numEdges];
+            Host[] to = new Host[numEdges];
+            for(int i = 0; i < numEdges; i++) {
+                edges[i] = context.newConnection();
+                from[i] = hosts[rand.nextInt(numNodes)];
+                to[i] = hosts[rand.nextInt(numNodes)];
+            }
+            long t0 = System.nanoTime();
+            for(int i = 0; i < numEdges; i++) {
+                if(graph.addEdge(edges[i], from[i], to[i])) BenchmarkSupport.sink++;
+            }
+            if(run >= BenchmarkSupport.WARMUP_RUNS) addNanos += System.nanoTime() - t0;
+        }
+
+        final Network graph = BenchmarkSupport.genSparseGraph(numNodes);
+        final Host[] hosts = graph.getVertices().toArray(new Host[0]);
+        Connection[] edges = graph.getEdges().toArray(new Connection[0]);
+        final Host[] from = new Host[numEdges];
+        final Host[] to = new Host[numEdges];
+        for(int i = 0; i < numEdges; i++) {
+            if(i % 2 == 0) {
+                Connection c = edges[rand.nextInt(edges.length)];
+                from[i] = graph.getSource(c);
+                to[i] = graph.getDest(c);
+            }
+            else {
+                from[i] = hosts[rand.nextInt(numNodes)];
+                to[i] = hosts[rand.nextInt(numNodes)];
+            }
+        }
+        double findNanos = BenchmarkSupport.averageTime(new Runnable() {
+            public void run() {
+                for(int i = 0; i < from.length; i++) {
+                    if(graph.findEdge(from[i], to[i]) != null) BenchmarkSupport.sink++;
+                }
+            }
+        });
+        double outNanos = BenchmarkSupport.averageTime(new Runnable() {
+            public void run() {
+                for(Host h : hosts) {
+                    for(Connection c : graph.getOutEdges(h)) {
+                        BenchmarkSupport.sink += c.getWeight();
+                    }
+                }
+            }
+        });
+        double inNanos = BenchmarkSupport.averageTime(new Runnable() {
+            public void run() {
+                for(Host h : hosts) {
+                    for(Connection c : graph.getInEdges(h)) {
+                        BenchmarkSupport.sink += c.getWeight();
+                    }
+                }
+            }
+        });
+
+        BenchmarkSupport.print("ops", "hosts=%-7d edges=%-8d addEdge()=%.1f ns  findEdge()=%.1f ns  getOutEdges()=%.1f ns/host  getInEdges()=%.1f ns/host",
+                               numNodes, graph.getEdgeCount(),
+                               (double) addNanos / ((long) numEdges * BenchmarkSupport.TIMED_RUNS),
+                               findNanos / numEdges, outNanos / numNodes, inNanos / numNodes);
+    }
+
+    /**
+     *  Compares building a sparse network one addEdge() at a
+     *  time with loading it in bulk with addEdges().
+     *  @param numNodes the number of hosts
+     *  @param numEdges the number of connections
+     */
+    static void benchBulk(int numNodes, int numEdges) {
+        long t0 = System.nanoTime();
+        Network graph = BenchmarkSupport.genSparseGraph(numNodes, numEdges, 0);
+        long oneNanos = System.nanoTime() - t0;
+        BenchmarkSupport.sink += graph.getEdgeCount();
+        graph = null;
+
+        t0 = System.nanoTime();
+        graph = BenchmarkSupport.genBulkGraph(numNodes, numEdges, 0);
+        long bulkNanos = System.nanoTime() - t0;
+        BenchmarkSupport.print("bulk", "hosts=%-8d edges=%-9d addEdge()=%.0f ms  addEdges()=%.0f ms  (%.1fx)  %.0f edges/sec",
+                               graph.getVertexCount(), graph.getEdgeCount(), oneNanos / 1e6, bulkNanos / 1e6,
+                               (double) oneNanos / bulkNanos, graph.getEdgeCount() / (bulkNanos / 1e9));
+    }
+
+    /**
+     *  Measures how much garbage walking the graph makes: a
+     *  render pass (every host and every edge with its endpoints,
+     *  what drawing a frame does), counting the edges, point to
+     *  point queries (which walk the in and out edges) and
+     *  computing every routing table.
+     *  @param numNodes the number of hosts
+     */
+    static void benchGarbage(int numNodes) {
+        Network graph = BenchmarkSupport.genSparseGraph(numNodes);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.setColoring(false);
+        alg.reset(graph);
+        String[] names = {"render", "edge count", "queries", "start()"};
+        int[] reps = {100, 100, 1000, 1};
+        for(int kind = 0; kind < names.length; kind++) {
+            for(int run = 0; run < BenchmarkSupport.WARMUP_RUNS + 1; run++) {
+                Random rand = new Random(6);
+                long gcBefore = BenchmarkSupport.gcCount();
+                long before = BenchmarkSupport.allocatedBytes();
+                long t0 = System.nanoTime();
+                for(int i = 0; i < reps[kind]; i++) {
+                    if(kind == 0) {
+                        for(Host h : graph.getVertices()) {
+                            BenchmarkSupport.sink += h.getId();
+                        }
+                        for(Connection c : graph.getEdges()) {
+                            BenchmarkSupport.sink += graph.getSource(c).getId() + graph.getDest(c).getId();
+                        }
+                    }
+                    else if(kind == 1) {
+                        BenchmarkSupport.sink += graph.getEdgeCount();
+                    }
+                    else if(kind == 2) {
+                        Path path = alg.findPath(graph.getHost(rand.nextInt(numNodes)), graph.getHost(rand.nextInt(numNodes)));
+                        if(path != null) BenchmarkSupport.sink += path.getCost();
+                    }
+                    else {
+                        alg.start();
+                    }
+                }
+                long elapsed = System.nanoTime() - t0;
+                long bytes = BenchmarkSupport.allocatedBytes() - before;
+                if(run == BenchmarkSupport.WARMUP_RUNS) {
+                    BenchmarkSupport.print("gc", "hosts=%-7d %-10s x%-5d allocated=%,d B (%,.0f B/op)  collections=%d  time=%.1f ms",
+                                           numNodes, names[kind], reps[kind], bytes, (double) bytes / reps[kind],
+                                           BenchmarkSupport.gcCount() - gcBefore, elapsed / 1e6);
+                }
+            }
+        }
+    }
+
+    /**
+     *  Compares the memory used by the next hop matrix with
+     *  what a hash table per host (a node and a key-value pair
+     *  per route) used to take. Routing from every host is too
+     *  slow for big networks, so a few sources are routed and
+     *  the sizes are worked out for all of them.
+     *  @param numNodes the number of hosts
+     */
+    static void benchRouteMemory(int numNodes) {
+        Network graph = BenchmarkSupport.genSparseGraph(numNodes);
+        List<Host> sources = BenchmarkSupport.pickHosts(graph, BenchmarkSupport.SAMPLED_SOURCES, 1);
+        ThreeTenNetwork alg = new ThreeTenNetwork();
+        alg.reset(graph);
+        alg.start(sources);
+
+        //copy each route into a hash table the way the
+        //routing tables used to store them
+        long tableBytes = 0;
+        long numRoutes = 0;
+        for(Host source : sources) {
+            HashTable<Host,Host> table = new HashTable<>(2);
+            for(KeyValuePair<Host,Host> pair : source.getRoutingTable().getInternalTable().getAllPairs()) {
+                table.add(pair.getKey(), pair.getValue());
+                numRoutes++;
+            }
+            //the table and routing table objects themselves
+            tableBytes += 2 * 24 + table.getInternalTable().memoryFootprint();
+        }
+
+        NextHopMatrix matrix = alg.getNextHopMatrix();
+        long rowBytes = (matrix.memoryFootprint() - 16L - 4L * matrix.getIdBound()) / sources.size();
+        long matrixBytes = 16L + 4L * matrix.getIdBound() + rowBytes * numNodes;
+        long hashBytes = tableBytes / sources.size() * numNodes;
+        BenchmarkSupport.print("routes", "hosts=%-7d routes/source=%-7d hash tables=%,d B (%.1f B/route)  matrix=%,d B (%.1f B/route)  %.1fx smaller",
+                               numNodes, numRoutes / sources.size(), hashBytes,
+                               (double) tableBytes / numRoutes, matrixBytes,
+                               (double) rowBytes * sources.size() / numRoutes,
+                               (double) hashBytes / matrixBytes);
+    }
+
+    /**
+     *  Runs the benchmark.
+     *  @param args what to measure and the sizes to try
+     */
+    public static void main(String[] args) {
+        String mode = (args.length > 0) ? args[0] : "";
+        if(mode.equals("ops")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 1000, 10000)) {
+                benchOps(n);
+            }
+        }
+        else if(mode.equals("bulk")) {
+            if(args.length > 1) {
+                int numNodes = Integer.parseInt(args[1]);
+                benchBulk(numNodes, BenchmarkSupport.intArg(args, 2, (int) (numNodes * BenchmarkSupport.AVG_OUT_DEGREE)));
+            }
+            else {
+                benchBulk(10000, 80000);
+                benchBulk(100000, 800000);
+                benchBulk(250000, 2000000);
+            }
+        }
+        else if(mode.equals("gc")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 2000)) {
+                benchGarbage(n);
+            }
+        }
+        else if(mode.equals("routes")) {
+            for(int n : BenchmarkSupport.sizes(args, 1, 1000, 5000, 20000)) {
+                benchRouteMemory(n);
+            }
+        }
+        else {
+            for(int n : BenchmarkSupport.sizes(args, 0, 100, 1000)) {
+                reportMemory(n);
+            }
+        }
+    }
+}
@@ -3,8 +3,18 @@ import edu.uci.ics.jung.graph.util.EdgeType;
 
 import java.awt.Color;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.PriorityQueue;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 
 /**
  *  Runs the actual networking code for the simulation.
@@ -14,10 +24,10 @@ class ThreeTenNetwork {
      * Set up the Dijkstra algorithm.
      * @param graph the given graph
      * @param startNode the startNode
-     * @param queue the given queue
-     * @param hostToDijkstraNode the hast table of host-DijkstraNode
+     * @param queue the given queue, indexed by host id
+     * @param idToDijkstraNode the array of host id-DijkstraNode
      */
-    public static void setupDijkstras(Network graph, Host startNode, PriorityQueue<DijkstraNode> queue, HashTable<Host,DijkstraNode> hostToDijkstraNode) {
+    public static void setupDijkstras(Network graph, Host startNode, ShortestPathQueue queue, DijkstraNode[] idToDijkstraNode) {
         // Get a collection of all vertices.
         Collection<Host> vertices = graph.getVertices();
         // Loop through each host in vertices.
@@ -28,55 +38,29 @@ class ThreeTenNetwork {
             if (node.equals(startNode)) {
                 host.distance = 0;
             }
-            // Add to queue and hash table.
-            queue.add(host);
-            hostToDijkstraNode.add(node, host);
+            // Add to queue and array.
+            queue.add(node.getId(), host.distance);
+            idToDijkstraNode[node.getId()] = host;
         }
     }
     /**
      * Set up the routing table to find the next hop from the startNode.
+     * Every node already knows its first hop (worked out while the edges were relaxed),
+     * so this is one pass over the hosts.
      * @param graph the graph
      * @param startNode the starting node
-     * @param hostToDijkstraNode the hash table of Host-DijkstraNode
+     * @param idToDijkstraNode the array of host id-DijkstraNode
      */
-    public static void setupTables(Network graph, Host startNode, HashTable<Host,DijkstraNode> hostToDijkstraNode) {
+    public static void setupTables(Network graph, Host startNode, DijkstraNode[] idToDijkstraNode) {
         // Get a collection of all vertices.
         Collection<Host> vertices = graph.getVertices();
-        // Get a DijkstraNode representation of startNode.
-        DijkstraNode start = hostToDijkstraNode.get(startNode);
         // Loop through each host in vertices collection.
         for (Host host : vertices) {
             // Get a DijkstraNode representation of the current destination node.
-            DijkstraNode dest = hostToDijkstraNode.get(host);
-            
-            /*
-             * Check if the parent of the current destination is not null and matches the startNode.
-             * If yes, add it to the routing table, because the startNode is the parent destination.
-             */ 
-            
-            if (dest.parent != null && dest.parent.equals(start)){
-                startNode.getRoutingTable().add(host,host);
-            } 
-            /*
-             * Loop through each node to find the parent which is the startNode.
-             */
-            while (dest.parent != null && !dest.parent.equals(start)) {
-                // If matches the conditions, set the dest node to its parent.
-                dest = dest.parent;
-                // Check if the dest.parent is null before reaching the startNode -> no connections.
-                // Break the loop immediately.
-                if (dest.parent == null) {
-                    break;
-                }
-                /*
-                 * Check if the current node parent is the startNode.
-                 * If yes,add the host (the current destination) and the next hop to the destination to the routing table.
-                 * Break the loop since the next hop is found.
-                 */
-                if (dest.parent.equals(start)) {
-                    startNode.getRoutingTable().add(host,dest.host);
-                    break;
-                }
+            DijkstraNode dest = idToDijkstraNode[host.getId()];
+            // A node without a first hop is the startNode itself or can't be reached.
+            if (dest.firstHop != null) {
+                startNode.getRoutingTable().add(host, dest.firstHop.host);
             }
         }
     }
@@ -86,7 +70,7 @@ class ThreeTenNetwork {
      *  distance. This wraps a Host with those properties for
      *  running the algorithm.
      */
-    private static class DijkstraNode implements Comparable<DijkstraNode> {
+    private static class DijkstraNode {
         /**
          *  The host being wrapped.
          */
@@ -98,6 +82,13 @@ class ThreeTenNetwork {
          */
         DijkstraNode parent;
         
+        /**
+         *  The first node after the starting node on the path
+         *  to this node. It is the node itself if its parent is
+         *  the starting node, otherwise it is its parent's.
+         */
+        DijkstraNode firstHop;
+        
         /**
          *  Whether or not the host is "done" (finalized) when
          *  running the algorithm.
@@ -115,24 +106,31 @@ class ThreeTenNetwork {
          *  @param h the host to wrap
          */
         public DijkstraNode(Host h) { this.host = h; }
+    }
+    
+    /**
+     *  The kinds of queue that can be used to run
+     *  Dijkstra's algorithm.
+     */
+    public enum Engine {
+        /**
+         *  A binary heap, works for any weights.
+         */
+        HEAP,
         
         /**
-         *  Compares two nodes in the algorithm so that
-         *  nodes with the smallest "distance" are taken
-         *  out of the priority queue first. Ties are
-         *  broken by node id.
-         *  
-         *  @param other the other node to compare this one to
-         *  @return 0 if two nodes are equal, < 0 if this < other, > 0  if this > other
+         *  A bucket queue (Dial's algorithm), only used when
+         *  all the weights are small positive integers.
          */
-        @Override
-        public int compareTo(DijkstraNode other) {
-            if(this.distance == other.distance)
-                return this.host.getId() - other.host.getId();
-            return this.distance - other.distance;
-        }
+        BUCKET
     }
     
+    /**
+     *  The largest connection weight the bucket engine will
+     *  handle. Above this the heap is used instead.
+     */
+    public static final int MAX_BUCKET_WEIGHT = 1024;
+    
     /**
      *  The network graph to use.
      */
@@ -144,73 +142,464 @@ class ThreeTenNetwork {
     private boolean started = false;
     
     /**
-     *  The current location of a message being sent
-     *  in the network.
+     *  A copy of the graph taken when the routes are computed.
+     *  In incremental mode it is patched as connections come
+     *  and go.
      */
-    private Host currentLoc = null;
+    private NetworkSnapshot snapshot = null;
     
     /**
-     *  The default color of a node.
+     *  Whether the graph changed in a way the snapshot could
+     *  not be patched to follow, so the next repair has to
+     *  take a new one.
      */
-    public static final Color COLOR_DEFAULT_NODE = Color.LIGHT_GRAY;
+    private boolean snapshotOutdated = false;
     
     /**
-     *  The default color of a node when it has a route, but
-     *  isn't being used.
+     *  The next hops found the last time the routes were
+     *  computed. The hosts' routing tables are views of it.
      */
-    public static final Color COLOR_NONE_NODE = Color.WHITE;
+    private NextHopMatrix routes = null;
     
     /**
-     *  The default color of an edge when it isn't being used.
+     *  One more than the largest host id in the graph,
+     *  worked out when the routes are computed.
      */
-    public static final Color COLOR_NONE_EDGE = Color.BLACK;
+    private int idBound = 0;
     
     /**
-     *  The color of an intermediate node when routing.
+     *  The engine asked for.
      */
-    public static final Color COLOR_DONE_NODE = Color.YELLOW;
+    private Engine engine = Engine.HEAP;
     
     /**
-     *  The default color of a when a message failed to route.
+     *  The engine actually used the last time the
+     *  routes were computed.
      */
-    public static final Color COLOR_FAILED_NODE = Color.RED;
+    private Engine activeEngine = Engine.HEAP;
     
     /**
-     *  The default color of a node sending a message.
+     *  The largest connection weight in the graph,
+     *  worked out when the routes are computed.
      */
-    public static final Color COLOR_SOURCE_NODE = Color.CYAN;
+    private int maxWeight = 0;
     
     /**
-     *  The default color of a node receiving a message.
+     *  The number of threads used to compute the routes,
+     *  1 means they are computed one source at a time.
      */
-    public static final Color COLOR_DEST_NODE = Color.GREEN;
+    private int parallelism = 1;
+    
+    /**
+     *  How long (in nanoseconds) the last route computation
+     *  took from start to finish.
+     */
+    private long lastWallNanos = 0;
+    
+    /**
+     *  How much CPU time (in nanoseconds) the searches in the
+     *  last route computation took added together.
+     */
+    private long lastWorkNanos = 0;
+    
+    /**
+     *  Whether routes are repaired when a connection is added
+     *  or removed instead of waiting for start() to be called.
+     */
+    private boolean incremental = false;
+    
+    /**
+     *  The distance from each source to each host found the
+     *  last time the source was searched, indexed by source id
+     *  and then host id. Only kept in incremental mode.
+     */
+    private int[][] distances = null;
+    
+    /**
+     *  Whether routing tables are only computed when a
+     *  message is first routed from a host.
+     */
+    private boolean lazy = false;
+    
+    /**
+     *  Whether the graph has changed since the snapshot was
+     *  taken. Only tracked in lazy mode.
+     */
+    private boolean stale = false;
+    
+    /**
+     *  Whether hosts and connections are colored to show
+     *  routing in the GUI.
+     */
+    private boolean coloring = true;
+    
+    /**
+     *  The number of sources searched again by the last repair.
+     */
+    private int lastTouchedSources = 0;
+    
+    /**
+     *  Answers point to point queries, made when first needed.
+     */
+    private BidirectionalSearch pathSearch = null;
+    
+    /**
+     *  Repairs the routes when the graph changes.
+     */
+    private final NetworkListener repairer = new NetworkListener() {
+        /**
+         *  Repairs the routes after a connection is added.
+         *  @param edge the new connection
+         *  @param source the host the connection leaves
+         *  @param dest the host the connection goes to
+         */
+        public void edgeAdded(Connection edge, Host source, Host dest) {
+            repairAddedEdge(edge, source, dest);
+        }
+        
+        /**
+         *  Repairs the routes once after many connections are added.
+         *  @param edges the new connections
+         */
+        public void edgesAdded(List<Connection> edges) {
+            repairAddedEdges(edges);
+        }
+        
+        /**
+         *  Repairs the routes after a connection is removed.
+         *  @param edge the removed connection
+         *  @param source the host the connection left
+         *  @param dest the host the connection went to
+         */
+        public void edgeRemoved(Connection edge, Host source, Host dest) {
+            repairRemovedEdge(edge, source, dest);
+        }
+        
+        /**
+         *  Repairs the routes once after many connections are removed.
+         *  @param edges the removed connections
+         *  @param sources the host each connection left
+         *  @param dests the host each connection went to
+         */
+        public void edgesRemoved(List<Connection> edges, List<Host> sources, List<Host> dests) {
+            repairRemovedEdges(edges, sources, dests);
+        }
+    };
+    
+    /**
+     *  Notices changes to the graph in lazy mode, so the routing
+     *  tables are thrown away before the next one is used.
+     */
+    private final NetworkListener invalidator = new NetworkListener() {
+        /**
+         *  Marks the routes stale after a connection is added.
+         *  @param edge the new connection
+         *  @param source the host the connection leaves
+         *  @param dest the host the connection goes to
+         */
+        public void edgeAdded(Connection edge, Host source, Host dest) {
+            stale = true;
+        }
+        
+        /**
+         *  Marks the routes stale after many connections are added.
+         *  @param edges the new connections
+         */
+        public void edgesAdded(List<Connection> edges) {
+            stale = true;
+        }
+        
+        /**
+         *  Marks the routes stale after a connection is removed.
+         *  @param edge the removed connection
+         *  @param source the host the connection left
+         *  @param dest the host the connection went to
+         */
+        public void edgeRemoved(Connection edge, Host source, Host dest) {
+            stale = true;
+        }
+        
+        /**
+         *  Marks the routes stale after many connections are removed.
+         *  @param edges the removed connections
+         *  @param sources the host each connection left
+         *  @param dests the host each connection went to
+         */
+        public void edgesRemoved(List<Connection> edges, List<Host> sources, List<Host> dests) {
+            stale = true;
+        }
+    };
+    
+    /**
+     *  The current location of a message being sent
+     *  in the network.
+     */
+    private Host currentLoc = null;
     
     /**
-     *  The color of an edge being used for routing.
+     *  The colors used to show routing in the GUI. They are kept
+     *  in their own class, which is only loaded the first time a
+     *  color is used, so routing without coloring never loads AWT.
      */
-    public static final Color COLOR_DONE_EDGE = Color.CYAN.darker();
+    public static final class Colors {
+        /**
+         *  The default color of a node.
+         */
+        public static final Color DEFAULT_NODE = Color.LIGHT_GRAY;
+        
+        /**
+         *  The default color of a node when it has a route, but
+         *  isn't being used.
+         */
+        public static final Color NONE_NODE = Color.WHITE;
+        
+        /**
+         *  The default color of an edge when it isn't being used.
+         */
+        public static final Color NONE_EDGE = Color.BLACK;
+        
+        /**
+         *  The color of an intermediate node when routing.
+         */
+        public static final Color DONE_NODE = Color.YELLOW;
+        
+        /**
+         *  The default color of a when a message failed to route.
+         */
+        public static final Color FAILED_NODE = Color.RED;
+        
+        /**
+         *  The default color of a node sending a message.
+         */
+        public static final Color SOURCE_NODE = Color.CYAN;
+        
+        /**
+         *  The default color of a node receiving a message.
+         */
+        public static final Color DEST_NODE = Color.GREEN;
+        
+        /**
+         *  The color of an edge being used for routing.
+         */
+        public static final Color DONE_EDGE = Color.CYAN.darker();
+        
+        /**
+         *  Not used, the class only holds constants.
+         */
+        private Colors() {
+        }
+    }
     
     /**
      *  Resets the network with a new graph.
      *  @param g the new network graph to use
      */
     public void reset(Network g) {
+        if(graph != null) {
+            graph.removeNetworkListener(repairer);
+            graph.removeNetworkListener(invalidator);
+        }
         this.graph = g;
+        listen();
         //System.out.println(graph.getInternalTable());
         clean();
     }
     
+    /**
+     *  Sets which engine to use the next time the routes
+     *  are computed. The bucket engine falls back to the
+     *  heap if the graph's weights don't fit in buckets.
+     *  @param engine the engine to use
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+    
+    /**
+     *  Returns the engine that was asked for.
+     *  @return the engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+    
+    /**
+     *  Returns the engine that was actually used the last
+     *  time the routes were computed.
+     *  @return the engine used
+     */
+    public Engine getActiveEngine() {
+        return activeEngine;
+    }
+    
+    /**
+     *  Sets the number of threads used to compute the routes.
+     *  Each source is searched independently, so with more than
+     *  one thread the searches run at the same time in a
+     *  ForkJoinPool. The graph must not be changed while the
+     *  routes are being computed.
+     *  @param parallelism the number of threads, 1 for sequential
+     *  @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     *  Returns the number of threads used to compute the routes.
+     *  @return the number of threads
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    /**
+     *  Returns how busy the threads were during the last route
+     *  computation: the CPU time all the searches took added
+     *  together divided by the time the whole computation took.
+     *  This is about 1 for a sequential run and at most the
+     *  number of threads. It is not a speedup; for that, time
+     *  a sequential and a parallel start() on the same graph.
+     *  @return the utilization, or 0 if the routes have not been computed
+     */
+    public double getLastUtilization() {
+        if(lastWallNanos == 0) return 0;
+        return (double) lastWorkNanos / lastWallNanos;
+    }
+    
+    /**
+     *  Returns how long the last route computation took.
+     *  @return the time in nanoseconds
+     */
+    public long getLastStartNanos() {
+        return lastWallNanos;
+    }
+    
+    /**
+     *  Turns incremental mode on or off. In incremental mode the
+     *  distances from every source are kept after the routes are
+     *  computed, and when a connection is added to or removed from
+     *  the graph only the sources whose shortest paths it can change
+     *  are searched again. This costs 4 bytes per source per host,
+     *  and only starts once start() has been called.
+     *  @param incremental whether to repair routes when the graph changes
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        listen();
+        if(!incremental) {
+            distances = null;
+        }
+    }
+    
+    /**
+     *  Returns whether routes are repaired when the graph changes.
+     *  @return true in incremental mode
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+    
+    /**
+     *  Turns lazy mode on or off. In lazy mode start() only takes a
+     *  snapshot of the graph, and a host's routing table is computed
+     *  the first time a message is routed from it and then kept
+     *  until the graph changes. Routes are not repaired in lazy
+     *  mode, even if it is incremental; after a change every table
+     *  is thrown away when the next one is used.
+     *  @param lazy whether to compute routing tables on first use
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+        listen();
+    }
+    
+    /**
+     *  Listens to the graph for the current mode: lazy mode only
+     *  notices changes, incremental mode repairs the routes.
+     */
+    private void listen() {
+        if(graph == null) return;
+        graph.removeNetworkListener(repairer);
+        graph.removeNetworkListener(invalidator);
+        if(lazy) {
+            graph.addNetworkListener(invalidator);
+        }
+        else if(incremental) {
+            graph.addNetworkListener(repairer);
+        }
+    }
+    
+    /**
+     *  Returns whether routing tables are computed on first use.
+     *  @return true in lazy mode
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+    
+    /**
+     *  Turns coloring on or off. Without coloring, routing doesn't
+     *  touch the colors of hosts and connections, so it can run
+     *  without loading any GUI classes.
+     *  @param coloring whether to color hosts and connections
+     */
+    public void setColoring(boolean coloring) {
+        this.coloring = coloring;
+    }
+    
+    /**
+     *  Returns whether hosts and connections are colored.
+     *  @return true if routing colors the graph
+     */
+    public boolean isColoring() {
+        return coloring;
+    }
+    
+    /**
+     *  Throws away every routing table computed so far and takes a
+     *  new snapshot of the graph, so routes are computed from the
+     *  current topology. In lazy mode the tables are computed again
+     *  when they are next used, otherwise start() has to be called.
+     *  Does nothing if the routes have not been computed.
+     */
+    public void invalidate() {
+        if(!started) return;
+        prepare();
+    }
+    
+    /**
+     *  Returns how many sources the last repair searched again.
+     *  @return the number of sources touched
+     */
+    public int getLastTouchedSources() {
+        return lastTouchedSources;
+    }
+    
+    /**
+     *  Returns the next hops found the last time the routes
+     *  were computed.
+     *  @return the next hop matrix, or null if the routes have not been computed
+     */
+    public NextHopMatrix getNextHopMatrix() {
+        return routes;
+    }
+    
     /**
      *  Puts things back the way they were initially.
      */
     private void clean() {
         started = false;
         currentLoc = null;
+        if(!coloring) return;
         for(Host v : graph.getVertices()) {
-            v.setColor(COLOR_DEFAULT_NODE);
+            v.setColor(Colors.DEFAULT_NODE);
         }
         for(Connection e : graph.getEdges()) {
-            e.setColor(COLOR_NONE_EDGE);
+            e.setColor(Colors.NONE_EDGE);
         }
     }
     
@@ -218,12 +607,340 @@ class ThreeTenNetwork {
      *  Does the routing in the network.
      */
     public void start() {
-        clean();
-        for(Host v : graph.getVertices()) {
-            //System.out.println("Running Dijkstra's from host " + v.toString());
-            runDijkstra(v);
+        if(lazy) {
+            long startTime = System.nanoTime();
+            clean();
+            prepare();
+            lastWorkNanos = 0;
+            lastWallNanos = System.nanoTime() - startTime;
+            started = true;
+            return;
         }
+        start(graph.getVertices());
+    }
+    
+    /**
+     *  Does the routing in the network, but only builds the
+     *  routing tables of the given hosts. This is useful for
+     *  networks too big to route from every host.
+     *  @param sources the hosts to build routing tables for
+     */
+    public void start(Collection<Host> sources) {
+        long startTime = System.nanoTime();
+        clean();
+        prepare();
+        runSearches(sources, startTime);
         started = true;
+        
+        //color the hosts that have routes
+        if(coloring) {
+            for(Host v : sources) {
+                v.setColor(Colors.NONE_NODE);
+            }
+        }
+    }
+    
+    /**
+     *  Takes a snapshot of the graph and makes an empty
+     *  next hop matrix for it.
+     */
+    private void prepare() {
+        takeSnapshot();
+        stale = false;
+        //leave room for every id the graph has handed out,
+        //even if the host with the largest one was removed
+        idBound = Math.max(snapshot.getIdBound(), graph.getIdBound());
+        
+        //one row of next hops per source, shared by
+        //every routing table
+        routes = new NextHopMatrix(graph, idBound);
+        distances = incremental ? new int[idBound][] : null;
+    }
+    
+    /**
+     *  In lazy mode, computes a host's routing table if it
+     *  hasn't been computed since the graph last changed.
+     *  @param host the host to route from
+     */
+    private void ensureRoutes(Host host) {
+        if(!lazy || !started || !graph.containsVertex(host)) return;
+        if(stale || graph.getIdBound() > idBound) {
+            //the graph changed, so the snapshot and
+            //every table made from it are out of date
+            prepare();
+        }
+        if(!routes.hasRow(host.getId())) {
+            runDijkstra(host);
+        }
+    }
+    
+    /**
+     *  Freezes the topology so the searches can walk it without
+     *  allocating, and picks the engine that suits its weights.
+     */
+    private void takeSnapshot() {
+        snapshot = graph.snapshot();
+        snapshotOutdated = false;
+        maxWeight = snapshot.getMaxWeight();
+        
+        //buckets only work for small weights (Connection
+        //already makes every weight at least 1)
+        activeEngine = engine;
+        if(engine == Engine.BUCKET && maxWeight > MAX_BUCKET_WEIGHT) {
+            activeEngine = Engine.HEAP;
+        }
+    }
+    
+    /**
+     *  Runs Dijkstra's algorithm from each source, one after
+     *  the other or in parallel.
+     *  @param sources the hosts to start from
+     *  @param startTime when the route computation started
+     */
+    private void runSearches(Collection<Host> sources, long startTime) {
+        lastWorkNanos = 0;
+        if(parallelism == 1) {
+            for(Host v : sources) {
+                //System.out.println("Running Dijkstra's from host " + v.toString());
+                long t0 = cpuNanos();
+                runDijkstra(v);
+                lastWorkNanos += cpuNanos() - t0;
+            }
+        }
+        else {
+            runDijkstraParallel(sources);
+        }
+        lastWallNanos = System.nanoTime() - startTime;
+    }
+    
+    /**
+     *  Repairs the routes after a connection was added. A source
+     *  is searched again if the new connection gives a path to its
+     *  destination that is at least as short as the one it had
+     *  (an equally short path can still win a tie). The connection
+     *  is patched into the snapshot when its host has a free slot
+     *  and it is no heavier than the others (a heavier one could
+     *  change the engine).
+     *  @param edge the new connection
+     *  @param from the host the connection leaves
+     *  @param to the host the connection goes to
+     *  @return the number of sources searched again
+     */
+    public int repairAddedEdge(Connection edge, Host from, Host to) {
+        if(!started || distances == null) return 0;
+        if(from.getId() >= idBound || to.getId() >= idBound) {
+            return recomputeAll();
+        }
+        if(edge.getWeight() > maxWeight
+           || !snapshot.addEdge(from.getId(), to.getId(), edge.getWeight(), edge.getId())) {
+            snapshotOutdated = true;
+        }
+        List<Host> touched = new ArrayList<>();
+        for(int s = 0; s < idBound; s++) {
+            int[] dist = distances[s];
+            if(dist == null || graph.getHost(s) == null) continue;
+            int du = dist[from.getId()];
+            if(du != Integer.MAX_VALUE && (long) du + edge.getWeight() <= dist[to.getId()]) {
+                touched.add(graph.getHost(s));
+            }
+        }
+        return repair(touched);
+    }
+    
+    /**
+     *  Repairs the routes once after several connections were
+     *  added, instead of once per connection. A source is searched
+     *  again if any of the new connections passes the test
+     *  repairAddedEdge() uses on the old distances; if none does,
+     *  the old distances still hold and no shortest path can use
+     *  a new connection. A bulk load is not patched into the
+     *  snapshot; the next repair takes a new one.
+     *  @param edges the new connections, all in the graph
+     *  @return the number of sources searched again
+     */
+    public int repairAddedEdges(List<Connection> edges) {
+        if(!started || distances == null) return 0;
+        int[] from = new int[edges.size()];
+        int[] to = new int[edges.size()];
+        for(int i = 0; i < edges.size(); i++) {
+            from[i] = graph.getSource(edges.get(i)).getId();
+            to[i] = graph.getDest(edges.get(i)).getId();
+            if(from[i] >= idBound || to[i] >= idBound) {
+                return recomputeAll();
+            }
+        }
+        snapshotOutdated = true;
+        List<Host> touched = new ArrayList<>();
+        for(int s = 0; s < idBound; s++) {
+            int[] dist = distances[s];
+            if(dist == null || graph.getHost(s) == null) continue;
+            for(int i = 0; i < from.length; i++) {
+                int du = dist[from[i]];
+                if(du != Integer.MAX_VALUE && (long) du + edges.get(i).getWeight() <= dist[to[i]]) {
+                    touched.add(graph.getHost(s));
+                    break;
+                }
+            }
+        }
+        return repair(touched);
+    }
+    
+    /**
+     *  Repairs the routes after a connection was removed. A source
+     *  is searched again if the connection was on one of its
+     *  shortest paths, that is if the distance to the destination
+     *  is the distance to the source plus the connection's weight.
+     *  @param edge the removed connection
+     *  @param from the host the connection left
+     *  @param to the host the connection went to
+     *  @return the number of sources searched again
+     */
+    public int repairRemovedEdge(Connection edge, Host from, Host to) {
+        return repairRemovedEdges(Collections.singletonList(edge), Collections.singletonList(from),
+                                  Collections.singletonList(to));
+    }
+    
+    /**
+     *  Repairs the routes once after several connections were
+     *  removed (all the connections of a removed host, say). Each
+     *  connection is taken out of the snapshot, and a source is
+     *  searched again if any of them was on one of its shortest
+     *  paths, by the test repairRemovedEdge() uses.
+     *  @param edges the removed connections
+     *  @param sources the host each connection left
+     *  @param dests the host each connection went to
+     *  @return the number of sources searched again
+     */
+    public int repairRemovedEdges(List<Connection> edges, List<Host> sources, List<Host> dests) {
+        if(!started || distances == null) return 0;
+        int[] from = new int[edges.size()];
+        int[] to = new int[edges.size()];
+        for(int i = 0; i < edges.size(); i++) {
+            from[i] = sources.get(i).getId();
+            to[i] = dests.get(i).getId();
+            if(from[i] >= idBound || to[i] >= idBound) {
+                return recomputeAll();
+            }
+        }
+        for(int i = 0; i < from.length; i++) {
+            if(!snapshot.removeEdge(from[i], to[i])) {
+                snapshotOutdated = true;
+            }
+        }
+        List<Host> touched = new ArrayList<>();
+        for(int s = 0; s < idBound; s++) {
+            int[] dist = distances[s];
+            if(dist == null || graph.getHost(s) == null) continue;
+            for(int i = 0; i < from.length; i++) {
+                int du = dist[from[i]];
+                if(du != Integer.MAX_VALUE && (long) du + edges.get(i).getWeight() == dist[to[i]]) {
+                    touched.add(graph.getHost(s));
+                    break;
+                }
+            }
+        }
+        return repair(touched);
+    }
+    
+    /**
+     *  Searches some sources again on the current graph. This is
+     *  not a dynamic shortest path algorithm: each touched source
+     *  is searched from scratch, so a repair costs a full search
+     *  per touched source, and working out which sources are
+     *  touched looks at every source. What it saves over start()
+     *  is the sources that aren't touched and, unless the snapshot
+     *  could not be patched, taking a new snapshot.
+     *  @param touched the sources to search
+     *  @return the number of sources searched
+     */
+    private int repair(List<Host> touched) {
+        lastTouchedSources = touched.size();
+        if(touched.isEmpty()) return 0;
+        long startTime = System.nanoTime();
+        if(graph.getIdBound() > idBound) {
+            //a host was added since the routes were computed
+            return recomputeAll();
+        }
+        if(snapshotOutdated) {
+            takeSnapshot();
+        }
+        runSearches(touched, startTime);
+        return lastTouchedSources;
+    }
+    
+    /**
+     *  Computes the routes again for every source that had them,
+     *  used when a host has been added since the routes were
+     *  computed (it has no column in the matrix). Only the
+     *  distances and next hops are replaced; a message being
+     *  routed and the colors are left alone.
+     *  @return the number of sources searched
+     */
+    private int recomputeAll() {
+        long startTime = System.nanoTime();
+        List<Host> sources = new ArrayList<>();
+        for(int s = 0; s < idBound; s++) {
+            if(distances[s] != null && graph.getHost(s) != null) {
+                sources.add(graph.getHost(s));
+            }
+        }
+        prepare();
+        runSearches(sources, startTime);
+        lastTouchedSources = sources.size();
+        return lastTouchedSources;
+    }
+    
+    /**
+     *  Returns the CPU time used by the current thread, or the
+     *  wall clock time if the JVM can't measure CPU time.
+     *  @return a time in nanoseconds
+     */
+    private static long cpuNanos() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean.isCurrentThreadCpuTimeSupported()) {
+            return bean.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+    
+    /**
+     *  Runs Dijkstra's algorithm from every source at the same
+     *  time. Each search only reads the graph and only writes
+     *  the routing table of its own start node.
+     *  @param sources the hosts to start from
+     */
+    private void runDijkstraParallel(Collection<Host> sources) {
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for(final Host v : sources) {
+            tasks.add(new Callable<Long>() {
+                /**
+                 *  Runs one search.
+                 *  @return the CPU time the search took in nanoseconds
+                 */
+                public Long call() {
+                    long t0 = cpuNanos();
+                    runDijkstra(v);
+                    return cpuNanos() - t0;
+                }
+            });
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for(Future<Long> f : pool.invokeAll(tasks)) {
+                lastWorkNanos += f.get();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing routes.", e);
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("Failed to compute routes.", e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
     }
     
     /**
@@ -234,41 +951,44 @@ class ThreeTenNetwork {
     private void runDijkstra(Host startNode) {
         //This is the queue which picks the "next" node
         //to pick for Dijkstra's shortest path algothim.
-        PriorityQueue<DijkstraNode> queue = new PriorityQueue<>();
+        //It is indexed by host id so a node's distance can
+        //be lowered in place.
+        ShortestPathQueue queue = newQueue();
         
-        //"Map" the host to it's representation in Dijkstra's algorithm
-        HashTable<Host,DijkstraNode> hostToDijkstraNode = new HashTable<>(10);
+        //"Map" the host's id to it's representation
+        //in Dijkstra's algorithm
+        DijkstraNode[] idToDijkstraNode = new DijkstraNode[idBound];
         
         //setup Dijkstra's shortest path algrothim
-        setupDijkstras(graph, startNode, queue, hostToDijkstraNode);
+        setupDijkstras(graph, startNode, queue, idToDijkstraNode);
         
         //This is Dijkstra's algothim... it's done for you.
+        DijkstraNode start = idToDijkstraNode[startNode.getId()];
         
         //Get the minimum node cost node that's still in the queue
-        DijkstraNode currMin = queue.poll();
+        DijkstraNode currMin = poll(queue, idToDijkstraNode);
         
         //If there are more nodes that aren't "done"
         //(they're still in the queue)...
         while(currMin != null && currMin.distance != Integer.MAX_VALUE) {
-            //get the edges from that node to anothers in the network
-            Collection<Connection> outEdges = graph.getOutEdges(currMin.host);
-            //update each connection
-            for(Connection e : outEdges) {
+            //walk the edges from that node to anothers in the network
+            int u = currMin.host.getId();
+            for(int e = snapshot.edgeStart(u); e < snapshot.edgeEnd(u); e++) {
                 //get the node on the other side of the connection
-                Host n = graph.getOpposite(currMin.host, e);
-                DijkstraNode algNode = hostToDijkstraNode.get(n);
+                int n = snapshot.getTarget(e);
+                DijkstraNode algNode = idToDijkstraNode[n];
                 //work out what the new cost would be
-                int newCost = currMin.distance + e.getWeight();
+                int newCost = currMin.distance + snapshot.getWeight(e);
                 
                 //update the other node if that node has not been
                 //finished and the new cost is less than the distance
                 if(!algNode.done && newCost < algNode.distance) {
-                    //there's no update, so just remove from
-                    //the queue, update it, and add it back in
-                    queue.remove(algNode);
+                    //lower the node's key where it sits in the queue
                     algNode.distance = newCost;
                     algNode.parent = currMin;
-                    queue.add(algNode);
+                    //the first hop comes from the parent, which is done
+                    algNode.firstHop = (currMin == start) ? algNode : currMin.firstHop;
+                    queue.decreaseKey(n, newCost);
                 }
             }
             
@@ -276,14 +996,89 @@ class ThreeTenNetwork {
             currMin.done = true;
             
             //get a new node to work on
-            currMin = queue.poll();
+            currMin = poll(queue, idToDijkstraNode);
         }
         
-        //Setup routing table for the start node...
-        setupTables(graph, startNode, hostToDijkstraNode);
+        //remember the distances for repairing the routes later
+        if(distances != null) {
+            int[] dist = new int[idBound];
+            for(int id = 0; id < idBound; id++) {
+                dist[id] = (idToDijkstraNode[id] == null) ? Integer.MAX_VALUE : idToDijkstraNode[id].distance;
+            }
+            distances[startNode.getId()] = dist;
+        }
         
-        //color
-        startNode.setColor(COLOR_NONE_NODE);
+        //Setup routing table for the start node (its
+        //row of the next hop matrix)...
+        startNode.getRoutingTable().attach(routes, startNode.getId());
+        setupTables(graph, startNode, idToDijkstraNode);
+    }
+    
+    /**
+     *  Makes an empty queue for the active engine.
+     *  @return the queue
+     */
+    private ShortestPathQueue newQueue() {
+        if(activeEngine == Engine.BUCKET) {
+            return new BucketQueue(idBound, Math.max(maxWeight, 1));
+        }
+        return new IndexedMinHeap(idBound);
+    }
+    
+    /**
+     *  Removes the closest node from the queue.
+     *  @param queue the queue of host ids
+     *  @param idToDijkstraNode the array of host id-DijkstraNode
+     *  @return the closest node, or null if the queue is empty
+     */
+    private static DijkstraNode poll(ShortestPathQueue queue, DijkstraNode[] idToDijkstraNode) {
+        int id = queue.poll();
+        return (id == -1) ? null : idToDijkstraNode[id];
+    }
+    
+    /**
+     *  Returns the id of the next hop from one host towards
+     *  another. In lazy mode the host's routing table is computed
+     *  first if it hasn't been already. This reads the next hop
+     *  matrix directly, so it allocates nothing.
+     *  @param from the id of the host the message is at
+     *  @param dest the id of the destination host
+     *  @return the id of the next hop, or NextHopMatrix.NO_ROUTE if there isn't one
+     *  @throws IllegalStateException if the routes have not been computed
+     */
+    public int nextHop(int from, int dest) {
+        if(routes == null) {
+            throw new IllegalStateException("The routes have not been computed.");
+        }
+        if(lazy && (stale || !routes.hasRow(from))) {
+            Host host = graph.getHost(from);
+            if(host != null) ensureRoutes(host);
+        }
+        return routes.getNextHop(from, dest);
+    }
+    
+    /**
+     *  Finds a shortest path from a source to a destination
+     *  without using or building any routing tables, so it works
+     *  before start() has been called. The search runs backward
+     *  from the destination as well as forward from the source.
+     *  @param source the source host
+     *  @param dest the destination host
+     *  @return the hops and cost of the path, or null if there is no path
+     */
+    public Path findPath(Host source, Host dest) {
+        if(pathSearch == null) {
+            pathSearch = new BidirectionalSearch();
+        }
+        return pathSearch.find(graph, source, dest);
+    }
+    
+    /**
+     *  Returns how many hosts the last findPath() settled.
+     *  @return the number of hosts settled
+     */
+    public int getLastPathSettled() {
+        return (pathSearch == null) ? 0 : pathSearch.getLastSettled();
     }
     
     /**
@@ -294,20 +1089,23 @@ class ThreeTenNetwork {
      *  @return whether or not another step is needed
      */
     public boolean step(Host source, Host dest) {
+        ensureRoutes(source);
         currentLoc = source;
-        for(Host h : graph.getVertices()) {
-            h.setColor(COLOR_NONE_NODE);
-        }
-        for(Connection c : graph.getEdges()) {
-            c.setColor(COLOR_NONE_EDGE);
+        if(coloring) {
+            for(Host h : graph.getVertices()) {
+                h.setColor(Colors.NONE_NODE);
+            }
+            for(Connection c : graph.getEdges()) {
+                c.setColor(Colors.NONE_EDGE);
+            }
         }
         
         if(source.equals(dest) && graph.findEdge(source, dest) == null) {
-            source.setColor(COLOR_FAILED_NODE);
+            if(coloring) source.setColor(Colors.FAILED_NODE);
             return false;
         }
         
-        currentLoc.setColor(COLOR_SOURCE_NODE);
+        if(coloring) currentLoc.setColor(Colors.SOURCE_NODE);
         return true;
     }
     
@@ -327,19 +1125,21 @@ class ThreeTenNetwork {
     
     /**
      *  Routes the message one step further in the network.
+     *  In lazy mode the current host's routing table is
+     *  computed first if it hasn't been already.
      *  @param dest the destination host of the message
      *  @return whether or not the routing is done
      */
     public boolean route(Host dest) {
-        Host nextHop = currentLoc.getRoutingTable().get(dest);
+        ensureRoutes(currentLoc);
+        Host nextHop = (routes != null) ? routes.getNextHop(currentLoc, dest) : currentLoc.getRoutingTable().get(dest);
         
         if(nextHop == null) return false;
         
-        Connection c = graph.findEdge(currentLoc, nextHop);
-        c.setColor(COLOR_DONE_EDGE);
+        if(coloring) graph.findEdge(currentLoc, nextHop).setColor(Colors.DONE_EDGE);
         
         currentLoc = nextHop;
-        currentLoc.setColor(COLOR_DONE_NODE);
+        if(coloring) currentLoc.setColor(Colors.DONE_NODE);
         
         return !currentLoc.equals(dest);
     }
@@ -349,11 +1149,206 @@ class ThreeTenNetwork {
      *  @param dest the destination host of the message
      */
     public void finish(Host dest) {
+        if(!coloring) return;
         if(currentLoc.equals(dest)) {
-            dest.setColor(COLOR_DEST_NODE);
+            dest.setColor(Colors.DEST_NODE);
         }
         else {
-            currentLoc.setColor(COLOR_FAILED_NODE);
+            currentLoc.setColor(Colors.FAILED_NODE);
+        }
+    }
+    
+    /**
+     *  Makes a random network for the checks in main().
+     *  @param numNodes the number of hosts
+     *  @param numEdges the number of connections to try to add
+     *  @param rand the random number generator
+     *  @return the network
+     */
+    private static Network randomGraph(int numNodes, int numEdges, Random rand) {
+        Network graph = new Network(new SimulationContext(rand.nextLong()));
+        Host[] hosts = graph.addHosts(numNodes);
+        for(int i = 0; i < numEdges; i++) {
+            graph.addEdge(graph.getContext().newConnection(), hosts[rand.nextInt(numNodes)], hosts[rand.nextInt(numNodes)]);
+        }
+        return graph;
+    }
+    
+    /**
+     *  Makes one random change to a network: adds one or several
+     *  connections, removes a connection, removes a host or adds a
+     *  new connected host.
+     *  @param graph the network
+     *  @param rand the random number generator
+     */
+    private static void editRandomly(Network graph, Random rand) {
+        List<Host> hosts = new ArrayList<>(graph.getVertices());
+        int op = rand.nextInt(20);
+        if(op < 2) {
+            //several connections at once
+            int[] sources = new int[5];
+            int[] dests = new int[5];
+            int[] weights = new int[5];
+            for(int i = 0; i < sources.length; i++) {
+                sources[i] = hosts.get(rand.nextInt(hosts.size())).getId();
+                dests[i] = hosts.get(rand.nextInt(hosts.size())).getId();
+                weights[i] = 1 + rand.nextInt(10);
+            }
+            graph.addEdges(sources, dests, weights);
+        }
+        else if(op < 9) {
+            Host from = hosts.get(rand.nextInt(hosts.size()));
+            Host to = hosts.get(rand.nextInt(hosts.size()));
+            graph.addEdge(graph.getContext().newConnection(), from, to);
+        }
+        else if(op < 18) {
+            List<Connection> edges = new ArrayList<>(graph.getEdges());
+            if(!edges.isEmpty()) graph.removeEdge(edges.get(rand.nextInt(edges.size())));
+        }
+        else if(op == 18 && hosts.size() > 2) {
+            graph.removeVertex(hosts.get(rand.nextInt(hosts.size())));
+        }
+        else {
+            Host h = graph.getContext().newHost();
+            graph.addVertex(h);
+            graph.addEdge(graph.getContext().newConnection(), h, hosts.get(rand.nextInt(hosts.size())));
+            graph.addEdge(graph.getContext().newConnection(), hosts.get(rand.nextInt(hosts.size())), h);
+        }
+    }
+    
+    /**
+     *  Checks incremental mode: after every random change, the
+     *  repaired next hops of every source must be the same as
+     *  computing the routes from scratch.
+     *  @param rand the random number generator
+     *  @return true if every check passed
+     */
+    private static boolean checkRepairs(Random rand) {
+        for(int trial = 0; trial < 12; trial++) {
+            int numNodes = 20 + 5 * trial;
+            Network graph = randomGraph(numNodes, 4 * numNodes, rand);
+            ThreeTenNetwork alg = new ThreeTenNetwork();
+            alg.setColoring(false);
+            alg.setEngine((trial % 2 == 0) ? Engine.HEAP : Engine.BUCKET);
+            if(trial % 3 == 2) alg.setParallelism(3);
+            alg.setIncremental(true);
+            alg.reset(graph);
+            alg.start();
+            for(int step = 0; step < 150; step++) {
+                editRandomly(graph, rand);
+                NextHopMatrix repaired = alg.getNextHopMatrix();
+                List<Host> sources = new ArrayList<>();
+                for(Host h : graph.getVertices()) {
+                    if(repaired.hasRow(h.getId())) sources.add(h);
+                }
+                ThreeTenNetwork full = new ThreeTenNetwork();
+                full.setColoring(false);
+                full.reset(graph);
+                full.start(sources);
+                NextHopMatrix expected = full.getNextHopMatrix();
+                for(Host source : sources) {
+                    for(Host dest : graph.getVertices()) {
+                        if(repaired.getNextHop(source.getId(), dest.getId()) != expected.getNextHop(source.getId(), dest.getId())) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     *  Checks that changing the network while a message is being
+     *  routed (which repairs the routes, and recomputes all of them
+     *  when a host was added) doesn't lose the message: it keeps
+     *  going from where it was and ends up where a full recompute
+     *  says it should.
+     *  @param rand the random number generator
+     *  @return true if every check passed
+     */
+    private static boolean checkRouteDuringRepair(Random rand) {
+        for(int trial = 0; trial < 200; trial++) {
+            Network graph = randomGraph(30, 120, rand);
+            ThreeTenNetwork alg = new ThreeTenNetwork();
+            alg.setColoring(false);
+            alg.setIncremental(true);
+            alg.reset(graph);
+            alg.start();
+            List<Host> hosts = new ArrayList<>(graph.getVertices());
+            Host source = hosts.get(rand.nextInt(hosts.size()));
+            Host dest = hosts.get(rand.nextInt(hosts.size()));
+            if(!alg.step(source, dest) || !alg.step(dest)) continue;
+            Host at = alg.currentLoc;
+            
+            //add a host, so every route is computed again
+            Host h = graph.getContext().newHost();
+            graph.addVertex(h);
+            graph.addEdge(graph.getContext().newConnection(), h, at);
+            if(alg.currentLoc != at) return false;
+            
+            ThreeTenNetwork full = new ThreeTenNetwork();
+            full.setColoring(false);
+            full.reset(graph);
+            full.start();
+            full.step(at, dest);
+            while(full.step(dest)) {
+                //keep going
+            }
+            while(alg.step(dest)) {
+                //keep going
+            }
+            if(alg.currentLoc != full.currentLoc) return false;
+        }
+        return true;
+    }
+    
+    /**
+     *  Checks lazy mode: after random changes, without calling
+     *  invalidate(), the next hops must be the same as computing
+     *  the routes from scratch.
+     *  @param rand the random number generator
+     *  @return true if every check passed
+     */
+    private static boolean checkLazyEdits(Random rand) {
+        for(int trial = 0; trial < 20; trial++) {
+            Network graph = randomGraph(30, 120, rand);
+            ThreeTenNetwork alg = new ThreeTenNetwork();
+            alg.setColoring(false);
+            alg.setLazy(true);
+            alg.reset(graph);
+            alg.start();
+            for(int step = 0; step < 100; step++) {
+                editRandomly(graph, rand);
+                List<Host> hosts = new ArrayList<>(graph.getVertices());
+                Host source = hosts.get(rand.nextInt(hosts.size()));
+                ThreeTenNetwork full = new ThreeTenNetwork();
+                full.setColoring(false);
+                full.reset(graph);
+                full.start(Collections.singletonList(source));
+                for(Host dest : hosts) {
+                    if(alg.nextHop(source.getId(), dest.getId()) != full.nextHop(source.getId(), dest.getId())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     *  Main method of the class which is used for testing.
+     *  @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if(checkRepairs(new Random(1))) {
+            System.out.println("Yay");
+        }
+        if(checkRouteDuringRepair(new Random(2))) {
+            System.out.println("Yay");
+        }
+        if(checkLazyEdits(new Random(3))) {
+            System.out.println("Yay");
         }
     }
 }
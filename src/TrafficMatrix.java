@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  How much traffic goes between hosts of a network: a list of
+ *  demands, each a source host id, a destination host id and a
+ *  number of messages. Matrices can be generated (uniform, gravity
+ *  or hotspot) or read from a CSV file, so the same load can be
+ *  replayed to measure routing.
+ *
+ *  <p>The demands are kept in parallel int arrays.
+ */
+public class TrafficMatrix {
+    /**
+     *  The source host id of each demand.
+     */
+    private int[] sources = new int[16];
+
+    /**
+     *  The destination host id of each demand.
+     */
+    private int[] dests = new int[16];
+
+    /**
+     *  The number of messages of each demand.
+     */
+    private int[] counts = new int[16];
+
+    /**
+     *  The number of demands.
+     */
+    private int size = 0;
+
+    /**
+     *  The number of messages of all the demands together.
+     */
+    private long totalMessages = 0;
+
+    /**
+     *  Adds a demand.
+     *  @param source the id of the source host
+     *  @param dest the id of the destination host
+     *  @param count the number of messages
+     *  @throws IllegalArgumentException if an id or the count is negative
+     */
+    public void add(int source, int dest, int count) {
+        if(source < 0 || dest < 0 || count < 0) {
+            throw new IllegalArgumentException("Host ids and message counts can't be negative.");
+        }
+        if(size == sources.length) {
+            sources = Arrays.copyOf(sources, size * 2);
+            dests = Arrays.copyOf(dests, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        sources[size] = source;
+        dests[size] = dest;
+        counts[size] = count;
+        size++;
+        totalMessages += count;
+    }
+
+    /**
+     *  Returns the number of demands.
+     *  @return the number of demands
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Returns the source of a demand.
+     *  @param i the index of the demand
+     *  @return the id of the source host
+     */
+    public int getSource(int i) {
+        return sources[i];
+    }
+
+    /**
+     *  Returns the destination of a demand.
+     *  @param i the index of the demand
+     *  @return the id of the destination host
+     */
+    public int getDest(int i) {
+        return dests[i];
+    }
+
+    /**
+     *  Returns the number of messages of a demand.
+     *  @param i the index of the demand
+     *  @return the number of messages
+     */
+    public int getCount(int i) {
+        return counts[i];
+    }
+
+    /**
+     *  Returns the number of messages of all the demands.
+     *  @return the total number of messages
+     */
+    public long getTotalMessages() {
+        return totalMessages;
+    }
+
+    /**
+     *  Returns the ids of the hosts in a network.
+     *  @param graph the network
+     *  @return the host ids
+     *  @throws IllegalArgumentException if the network has no hosts
+     */
+    private static int[] hostIds(Network graph) {
+        if(graph.getVertexCount() == 0) {
+            throw new IllegalArgumentException("The network has no hosts.");
+        }
+        int[] ids = new int[graph.getVertexCount()];
+        int i = 0;
+        for(Host h : graph.getVertices()) {
+            ids[i++] = h.getId();
+        }
+        return ids;
+    }
+
+    /**
+     *  Picks a host other than the given one (unless it is
+     *  the only host).
+     *  @param ids the host ids
+     *  @param not the id to avoid
+     *  @param rand the random number generator
+     *  @return a host id
+     */
+    private static int pickOther(int[] ids, int not, Random rand) {
+        if(ids.length == 1) return ids[0];
+        int id = ids[rand.nextInt(ids.length)];
+        while(id == not) {
+            id = ids[rand.nextInt(ids.length)];
+        }
+        return id;
+    }
+
+    /**
+     *  Makes a matrix where every message goes between a random
+     *  pair of different hosts.
+     *  @param graph the network
+     *  @param messages the number of messages
+     *  @param rand the random number generator
+     *  @return the matrix
+     */
+    public static TrafficMatrix uniform(Network graph, int messages, Random rand) {
+        int[] ids = hostIds(graph);
+        TrafficMatrix matrix = new TrafficMatrix();
+        for(int i = 0; i < messages; i++) {
+            int source = ids[rand.nextInt(ids.length)];
+            matrix.add(source, pickOther(ids, source, rand), 1);
+        }
+        return matrix;
+    }
+
+    /**
+     *  Makes a gravity model matrix: the traffic between two hosts
+     *  is proportional to the product of their "masses", here one
+     *  more than the number of connections they have. Well
+     *  connected hosts send and receive more.
+     *  @param graph the network
+     *  @param messages the number of messages
+     *  @param rand the random number generator
+     *  @return the matrix
+     */
+    public static TrafficMatrix gravity(Network graph, int messages, Random rand) {
+        int[] ids = hostIds(graph);
+        //running totals of the masses, to pick hosts in proportion to them
+        long[] cumulative = new long[ids.length];
+        long total = 0;
+        for(int i = 0; i < ids.length; i++) {
+            total += graph.degree(graph.getHost(ids[i])) + 1;
+            cumulative[i] = total;
+        }
+        TrafficMatrix matrix = new TrafficMatrix();
+        for(int i = 0; i < messages; i++) {
+            int source = ids[pickWeighted(cumulative, total, rand)];
+            int dest = source;
+            while(dest == source && ids.length > 1) {
+                dest = ids[pickWeighted(cumulative, total, rand)];
+            }
+            matrix.add(source, dest, 1);
+        }
+        return matrix;
+    }
+
+    /**
+     *  Picks an index with probability proportional to its weight.
+     *  @param cumulative the running totals of the weights
+     *  @param total the total weight
+     *  @param rand the random number generator
+     *  @return the index
+     */
+    private static int pickWeighted(long[] cumulative, long total, Random rand) {
+        long target = (long) (rand.nextDouble() * total);
+        int index = Arrays.binarySearch(cumulative, target + 1);
+        return (index >= 0) ? index : -index - 1;
+    }
+
+    /**
+     *  Makes a hotspot matrix: a fraction of the messages go to a
+     *  few different hotspot hosts (picked at random), and the rest go
+     *  between random pairs of different hosts. No message goes
+     *  from a host to itself.
+     *  @param graph the network
+     *  @param messages the number of messages
+     *  @param numHotspots the number of hotspot hosts
+     *  @param hotFraction the fraction of messages sent to hotspots
+     *  @param rand the random number generator
+     *  @return the matrix
+     *  @throws IllegalArgumentException if there are no hotspots or the fraction isn't between 0 and 1
+     */
+    public static TrafficMatrix hotspot(Network graph, int messages, int numHotspots, double hotFraction, Random rand) {
+        if(numHotspots < 1 || hotFraction < 0 || hotFraction > 1) {
+            throw new IllegalArgumentException("Need at least one hotspot and a fraction between 0 and 1.");
+        }
+        int[] ids = hostIds(graph);
+        //a partial shuffle, so no host is picked twice
+        int[] hotspots = new int[Math.min(numHotspots, ids.length)];
+        for(int i = 0; i < hotspots.length; i++) {
+            int j = i + rand.nextInt(ids.length - i);
+            int id = ids[j];
+            ids[j] = ids[i];
+            ids[i] = id;
+            hotspots[i] = id;
+        }
+        TrafficMatrix matrix = new TrafficMatrix();
+        for(int i = 0; i < messages; i++) {
+            int source = ids[rand.nextInt(ids.length)];
+            int dest;
+            if(rand.nextDouble() < hotFraction) {
+                dest = hotspots[rand.nextInt(hotspots.length)];
+                //a hotspot doesn't send to itself, so pick another sender
+                if(source == dest) source = pickOther(ids, dest, rand);
+            }
+            else {
+                dest = pickOther(ids, source, rand);
+            }
+            matrix.add(source, dest, 1);
+        }
+        return matrix;
+    }
+
+    /**
+     *  Reads a matrix from CSV. Each line is "source,dest" or
+     *  "source,dest,count", where a host is its id or its address.
+     *  Blank lines, lines starting with # and a header line starting
+     *  with "source" are skipped.
+     *  @param graph the network the hosts are in
+     *  @param in where to read the CSV from
+     *  @return the matrix
+     *  @throws IOException if reading fails
+     *  @throws IllegalArgumentException if a line can't be understood,
+     *      names a host that isn't in the network or has a negative count
+     */
+    public static TrafficMatrix readCsv(Network graph, Reader in) throws IOException {
+        HostPairReader reader = new HostPairReader(graph, in, "count", true, 0);
+        TrafficMatrix matrix = new TrafficMatrix();
+        while(reader.next()) {
+            try {
+                matrix.add(reader.getSource(), reader.getDest(), reader.getValue());
+            }
+            catch(IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + reader.getLineNumber() + ": " + e.getMessage(), e);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     *  Writes the matrix as CSV that readCsv() can read back.
+     *  @param out where to write the CSV
+     *  @throws IOException if writing fails
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("source,dest,count\n");
+        for(int i = 0; i < size; i++) {
+            out.write(Host.addressOf(sources[i]) + "," + Host.addressOf(dests[i]) + "," + counts[i] + "\n");
+        }
+        out.flush();
+    }
+
+    /**
+     *  Returns the hosts that receive the most messages.
+     *  @param n the number of hosts to return
+     *  @return the ids of the busiest destinations, busiest first
+     */
+    public List<Integer> topDestinations(int n) {
+        int bound = 0;
+        for(int i = 0; i < size; i++) {
+            bound = Math.max(bound, dests[i] + 1);
+        }
+        final long[] received = new long[bound];
+        for(int i = 0; i < size; i++) {
+            received[dests[i]] += counts[i];
+        }
+        List<Integer> ids = new ArrayList<>();
+        for(int id = 0; id < bound; id++) {
+            if(received[id] > 0) ids.add(id);
+        }
+        ids.sort(new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(received[b], received[a]);
+            }
+        });
+        return ids.subList(0, Math.min(n, ids.size()));
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "TrafficMatrix[demands=" + size + ", messages=" + totalMessages + "]";
+    }
+}
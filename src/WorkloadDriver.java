@@ -0,0 +1,239 @@
+import java.util.Arrays;
+
+/**
+ *  Pushes a traffic matrix through the routing tables in bulk:
+ *  every demand (an entry of the matrix: a source, a destination
+ *  and a number of messages) is walked hop by hop from its source
+ *  to its destination along the next hops, once however many
+ *  messages it carries. Unlike the packet simulator
+ *  there is no simulated time or queueing, so this measures how
+ *  fast routes can be followed and how long the paths are.
+ *
+ *  <p>The driver doesn't draw anything, so it can run without
+ *  the GUI. Hop counts are kept as a histogram, so a workload
+ *  of any size takes the same memory.
+ */
+public class WorkloadDriver {
+    /**
+     *  The routing code that knows the next hops.
+     */
+    private final ThreeTenNetwork alg;
+
+    /**
+     *  The connections and their weights, taken when
+     *  the driver was made.
+     */
+    private final NetworkSnapshot snapshot;
+
+    /**
+     *  How many delivered messages took each number of hops.
+     */
+    private long[] hopCounts = new long[64];
+
+    /**
+     *  The number of demands walked.
+     */
+    private long demands = 0;
+
+    /**
+     *  The number of messages that reached their destination.
+     */
+    private long routed = 0;
+
+    /**
+     *  The number of messages that had no route.
+     */
+    private long unroutable = 0;
+
+    /**
+     *  The total number of hops routed messages took.
+     */
+    private long totalHops = 0;
+
+    /**
+     *  The total weight of the connections routed messages crossed.
+     */
+    private long totalCost = 0;
+
+    /**
+     *  The real time spent routing, in nanoseconds.
+     */
+    private long runNanos = 0;
+
+    /**
+     *  Makes a driver for a network whose routes have been
+     *  computed (or will be computed on first use in lazy mode).
+     *  @param graph the network
+     *  @param alg the routing code, already started on the network
+     *  @throws IllegalStateException if the routes have not been computed
+     */
+    public WorkloadDriver(Network graph, ThreeTenNetwork alg) {
+        if(alg.getNextHopMatrix() == null) {
+            throw new IllegalStateException("Call start() before running a workload.");
+        }
+        this.alg = alg;
+        this.snapshot = graph.snapshot();
+    }
+
+    /**
+     *  Routes every message of a traffic matrix. Each demand is
+     *  walked once and its path counted once per message. Results
+     *  add up over several runs until reset() is called.
+     *  @param matrix the traffic to route
+     */
+    public void run(TrafficMatrix matrix) {
+        long startTime = System.nanoTime();
+        for(int i = 0; i < matrix.size(); i++) {
+            int count = matrix.getCount(i);
+            if(count > 0) {
+                route(matrix.getSource(i), matrix.getDest(i), count);
+                demands++;
+            }
+        }
+        runNanos += System.nanoTime() - startTime;
+    }
+
+    /**
+     *  Follows the next hops from a source to a destination.
+     *  @param source the id of the source host
+     *  @param dest the id of the destination host
+     *  @param count the number of messages going this way
+     */
+    private void route(int source, int dest, int count) {
+        int current = source;
+        int hops = 0;
+        long cost = 0;
+        while(current != dest) {
+            int next = alg.nextHop(current, dest);
+            int e = (next == NextHopMatrix.NO_ROUTE) ? -1 : snapshot.linkPosition(current, next);
+            //no route, or a loop (a route can't be longer than the number of hosts)
+            if(e < 0 || hops >= snapshot.getVertexCount()) {
+                unroutable += count;
+                return;
+            }
+            cost += snapshot.getWeight(e);
+            hops++;
+            current = next;
+        }
+        if(hops >= hopCounts.length) {
+            hopCounts = Arrays.copyOf(hopCounts, Math.max(hops + 1, hopCounts.length * 2));
+        }
+        hopCounts[hops] += count;
+        routed += count;
+        totalHops += (long) hops * count;
+        totalCost += cost * count;
+    }
+
+    /**
+     *  Forgets the results of earlier runs.
+     */
+    public void reset() {
+        Arrays.fill(hopCounts, 0);
+        demands = 0;
+        routed = 0;
+        unroutable = 0;
+        totalHops = 0;
+        totalCost = 0;
+        runNanos = 0;
+    }
+
+    /**
+     *  Returns the number of messages that reached their destination.
+     *  @return the number of routed messages
+     */
+    public long getRouted() {
+        return routed;
+    }
+
+    /**
+     *  Returns the number of messages that had no route.
+     *  @return the number of unroutable messages
+     */
+    public long getUnroutable() {
+        return unroutable;
+    }
+
+    /**
+     *  Returns the number of demands walked.
+     *  @return the number of demands
+     */
+    public long getDemands() {
+        return demands;
+    }
+
+    /**
+     *  Returns how many demands were walked per second of real
+     *  time. This is the rate routes were actually followed at.
+     *  @return the routing rate, or 0 if nothing has run
+     */
+    public double getDemandsPerSecond() {
+        return (runNanos == 0) ? 0 : demands / (runNanos / 1e9);
+    }
+
+    /**
+     *  Returns how many messages were accounted for per second of
+     *  real time. A demand of many messages is only walked once, so
+     *  this is higher than getDemandsPerSecond() by the average
+     *  number of messages per demand.
+     *  @return the message rate, or 0 if nothing has run
+     */
+    public double getMessagesPerSecond() {
+        return (runNanos == 0) ? 0 : (routed + unroutable) / (runNanos / 1e9);
+    }
+
+    /**
+     *  Returns the number of hops that the given fraction of
+     *  routed messages took or fewer.
+     *  @param fraction the percentile as a fraction (0.99 for the 99th)
+     *  @return the number of hops
+     */
+    public int getHopPercentile(double fraction) {
+        return LinkQueue.percentile(hopCounts, fraction);
+    }
+
+    /**
+     *  Returns the largest number of hops a routed message took.
+     *  @return the most hops, or 0 if nothing was routed
+     */
+    public int getMaxHops() {
+        for(int hops = hopCounts.length - 1; hops > 0; hops--) {
+            if(hopCounts[hops] > 0) return hops;
+        }
+        return 0;
+    }
+
+    /**
+     *  Returns the average number of hops a routed message took.
+     *  @return the average number of hops, or 0 if nothing was routed
+     */
+    public double getAverageHops() {
+        return (routed == 0) ? 0 : (double) totalHops / routed;
+    }
+
+    /**
+     *  Returns the average total weight of the connections
+     *  a routed message crossed.
+     *  @return the average path cost, or 0 if nothing was routed
+     */
+    public double getAverageCost() {
+        return (routed == 0) ? 0 : (double) totalCost / routed;
+    }
+
+    /**
+     *  Returns a one line summary of the runs.
+     *  @return the summary
+     */
+    public String report() {
+        return String.format("demands=%d routed=%d unroutable=%d demands/sec=%.0f messages/sec=%.0f avg hops=%.2f hops p50=%d p90=%d p99=%d max=%d avg cost=%.2f",
+                             demands, routed, unroutable, getDemandsPerSecond(), getMessagesPerSecond(), getAverageHops(), getHopPercentile(0.5),
+                             getHopPercentile(0.9), getHopPercentile(0.99), getMaxHops(), getAverageCost());
+    }
+
+    /**
+     *  Get a string representation.
+     *  @return a string representation
+     */
+    public String toString() {
+        return "WorkloadDriver[" + report() + "]";
+    }
+}